@@ -0,0 +1,133 @@
+package org.example.print.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.print.bean.PrintContentType;
+import org.example.print.bean.PrintTask;
+import org.example.print.bean.PrintTaskPriority;
+import org.example.print.bean.PrintTaskStatus;
+import org.example.print.config.JacksonConfig;
+import org.example.print.persistence.ContentCompression;
+import org.example.print.persistence.PrintTaskCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持久化编码基准
+ * 对比日志记录使用的二进制编码与原来的JSON序列化。任务加入队列时内容已经压缩，二进制编码只复制压缩后的字节，
+ * 因此编码和压缩分开测量：encodeBinary/decodeBinary只包含编码，compressContent/decompressContent只包含内容压缩。
+ * 启动时输出字段部分和内容部分各自的字节数，items为0时任务没有打印内容
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrintTaskCodecBenchmark {
+
+    @Param({"0", "15", "100"})
+    private int items;
+
+    private ObjectMapper objectMapper;
+    private String content;
+    // 内容为原始字符串，JSON序列化使用
+    private PrintTask plainTask;
+    // 内容已压缩，与加入队列后持久化时相同
+    private PrintTask packedTask;
+    private byte[] packed;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new JacksonConfig().objectMapper();
+        content = items > 0 ? orderContent(items) : null;
+
+        plainTask = task();
+        plainTask.setContent(content);
+        packedTask = task();
+        packedTask.setContent(content);
+        packedTask.packContent();
+        packed = packedTask.packedContent();
+
+        binary = PrintTaskCodec.encode(packedTask);
+        json = objectMapper.writeValueAsBytes(plainTask);
+        reportSizes();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return PrintTaskCodec.encode(packedTask);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(plainTask);
+    }
+
+    @Benchmark
+    public byte[] compressContent() {
+        return ContentCompression.compress(content);
+    }
+
+    @Benchmark
+    public PrintTask decodeBinary() {
+        return PrintTaskCodec.decode(binary);
+    }
+
+    @Benchmark
+    public PrintTask decodeJson() throws IOException {
+        return objectMapper.readValue(json, PrintTask.class);
+    }
+
+    @Benchmark
+    public String decompressContent() {
+        return packed != null ? ContentCompression.decompress(packed) : content;
+    }
+
+    // 字段部分按不带内容的任务计算，内容部分为原始和压缩后的字节数
+    private void reportSizes() throws IOException {
+        PrintTask fieldsOnly = task();
+        int binaryFields = PrintTaskCodec.encode(fieldsOnly).length;
+        int jsonFields = objectMapper.writeValueAsBytes(fieldsOnly).length;
+        int rawContent = content != null ? content.getBytes(StandardCharsets.UTF_8).length : 0;
+        int storedContent = packed != null ? packed.length : rawContent;
+        // 输出到分叉的基准进程控制台，使用ASCII避免乱码
+        System.out.printf("%n[items=%d] fields: binary=%dB json=%dB; content: raw=%dB stored=%dB; record: binary=%dB json=%dB%n",
+                items, binaryFields, jsonFields, rawContent, storedContent, binary.length, json.length);
+    }
+
+    private static PrintTask task() {
+        return PrintTask.builder()
+                .taskId("T20240101120000123456")
+                .status(PrintTaskStatus.PENDING)
+                .createTime(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123456789))
+                .printerName("XP-58")
+                .priority(PrintTaskPriority.MEDIUM)
+                .contentType(PrintContentType.RECEIPT)
+                .storeId("1001")
+                .build();
+    }
+
+    private static String orderContent(int items) {
+        StringBuilder sb = new StringBuilder("{\"order_sn\":\"20240101120000123456\",\"shop_name\":\"测试门店\",\"goods\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"goods_name\":\"招牌牛肉面（大份）").append(i)
+                    .append("\",\"goods_code\":\"G").append(1000 + i)
+                    .append("\",\"goods_num\":").append(i % 3 + 1)
+                    .append(",\"goods_price\":28.50}");
+        }
+        return sb.append("],\"goods_price\":427.50,\"all_money\":427.50}").toString();
+    }
+}
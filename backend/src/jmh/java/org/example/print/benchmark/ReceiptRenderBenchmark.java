@@ -0,0 +1,103 @@
+package org.example.print.benchmark;
+
+import org.example.print.bean.PrinterProfile;
+import org.example.print.render.PaperSize;
+import org.example.print.render.ReceiptLayout;
+import org.example.print.render.ReceiptWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 小票渲染基准
+ * 对比原来逐行拼接字符串再整体按GBK编码的做法，与ReceiptLayout查表对齐、ReceiptWriter输出字节的做法；
+ * 两种做法输出相同的行：分隔线、表头、每个商品一行、分隔线
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReceiptRenderBenchmark {
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    @Param({"15", "60", "100"})
+    private int items;
+
+    private String[][] goods;
+    private PrinterProfile profile;
+
+    @Setup
+    public void setup() {
+        goods = new String[items][];
+        for (int i = 0; i < items; i++) {
+            goods[i] = new String[]{"招牌牛肉面（大份）" + i, String.valueOf(i % 3 + 1), "28.50", "57.00"};
+        }
+        profile = PrinterProfile.builder()
+                .printerName("benchmark")
+                .paperSize(PaperSize.MM_58)
+                .charset("GBK")
+                .escPos(true)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] legacyConcat() {
+        StringBuilder content = new StringBuilder();
+        content.append("--------------------------------\n");
+        content.append(legacyRow("商品", "数量", "单价", "小计")).append("\n");
+        for (String[] row : goods) {
+            content.append(legacyRow(row[0], row[1], row[2], row[3])).append("\n");
+        }
+        content.append("--------------------------------\n");
+        return content.toString().getBytes(GBK);
+    }
+
+    @Benchmark
+    public byte[] receiptWriter() {
+        ReceiptWriter writer = ReceiptWriter.forProfile(profile);
+        ReceiptLayout layout = writer.getLayout();
+        StringBuilder content = writer.text();
+        content.append(layout.divider());
+        layout.appendTableRow(content, "商品", "数量", "单价", "小计").append('\n');
+        for (String[] row : goods) {
+            layout.appendTableRow(content, row[0], row[1], row[2], row[3]).append('\n');
+        }
+        content.append(layout.divider());
+        return writer.toByteArray();
+    }
+
+    // 原UnifiedPrintService.formatTableRow的实现，作为对照
+    private static String legacyRow(String col1, String col2, String col3, String col4) {
+        int[] columnWidths = {12, 4, 6, 6};
+        StringBuilder row = new StringBuilder();
+        String[] columns = {col1, col2, col3, col4};
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i] != null ? columns[i] : "";
+            row.append(column);
+            int spacesToAdd = columnWidths[i] - legacyWidth(column);
+            for (int j = 0; j < spacesToAdd; j++) {
+                row.append(" ");
+            }
+            if (i < columns.length - 1) {
+                row.append(" ");
+            }
+        }
+        return row.toString();
+    }
+
+    private static int legacyWidth(String str) {
+        int width = 0;
+        for (char c : str.toCharArray()) {
+            width += c >= 0x4E00 && c <= 0x9FFF ? 2 : 1;
+        }
+        return width;
+    }
+}
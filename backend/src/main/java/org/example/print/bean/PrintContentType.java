@@ -0,0 +1,16 @@
+package org.example.print.bean;
+
+/**
+ * 打印内容类型
+ */
+public enum PrintContentType {
+    RECEIPT("小票"),   // 订单/退货单JSON，按ESC/POS渲染
+    TEXT("纯文本"),
+    PDF("PDF文档");    // content为Base64编码的PDF文件
+
+    private final String description;
+
+    PrintContentType(String description) {
+        this.description = description;
+    }
+}
@@ -1,10 +1,17 @@
 package org.example.print.bean;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.example.print.persistence.ContentCompression;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 
 @Data
@@ -13,13 +20,83 @@ import java.time.LocalDateTime;
 @AllArgsConstructor // 添加全参构造函数
 public class PrintTask {
     private String taskId;                 // 任务ID
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private String content;                // 打印内容
     private PrintTaskStatus status;        // 任务状态
     private int retryCount;                // 重试次数
     private LocalDateTime createTime;      // 创建时间
     private String printerName;            // 打印机名称
     private PrintTaskPriority priority;     // 任务优先级
+    private PrintContentType contentType;  // 内容类型，为空时根据内容自动判断
+    private String storeId;                // 所属门店，按门店选择打印机和轮流调度
 
-}
+    // 压缩后的打印内容，不为空时content为空，读取时再解压
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private byte[] packedContent;
+
+    public String getContent() {
+        byte[] packed = packedContent;
+        return packed != null ? ContentCompression.decompress(packed) : content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.packedContent = null;
+    }
+
+    /**
+     * 压缩打印内容，任务在队列中等待期间只占用压缩后的内存，内容较短时不压缩
+     */
+    public void packContent() {
+        if (packedContent != null) {
+            return;
+        }
+        byte[] packed = ContentCompression.compress(content);
+        if (packed != null) {
+            packedContent = packed;
+            content = null;
+        }
+    }
 
+    /**
+     * 使用UTF-8编码的内容，直接从数组中的一段压缩，内容较短时才转换为字符串
+     */
+    public void useContentBytes(byte[] raw, int offset, int length) {
+        byte[] packed = ContentCompression.compress(raw, offset, length);
+        if (packed != null) {
+            usePackedContent(packed);
+        } else {
+            setContent(new String(raw, offset, length, StandardCharsets.UTF_8));
+        }
+    }
 
+    /**
+     * UTF-8编码的打印内容，压缩保存时直接解压为字节，不经过字符串
+     */
+    public byte[] contentBytes() {
+        byte[] packed = packedContent;
+        if (packed != null) {
+            return ContentCompression.decompressBytes(packed);
+        }
+        return content != null ? content.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * 压缩后的打印内容，未压缩时返回null
+     */
+    public byte[] packedContent() {
+        return packedContent;
+    }
+
+    /**
+     * 直接使用已压缩的内容，不解压
+     */
+    public void usePackedContent(byte[] packed) {
+        this.packedContent = packed;
+        this.content = null;
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.print.bean;
+
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * 远程服务器推送的打印任务消息
+ * content为JSON对象或数组时不解析，只记录它在原始消息中的位置，保存任务时直接从原始字节压缩；
+ * content为字符串时保存在contentText中
+ */
+@Data
+public class PrintTaskMessage {
+    private String type;                   // 消息类型，打印任务为print_task
+    private Long seq;                      // 推送序号，用于发现遗漏
+    private String taskId;                 // 任务ID
+    private String storeId;                // 所属门店，消息中没有时取订阅的门店
+    private String printerName;            // 打印机名称
+    private PrintContentType contentType;  // 内容类型，服务器未指定时为空
+    private String contentText;            // 字符串形式的打印内容
+
+    // 原始消息和content在其中的位置
+    @ToString.Exclude
+    private byte[] frame;
+    private int contentOffset;
+    private int contentLength;
+
+    public boolean isPrintTask() {
+        return "print_task".equals(type);
+    }
+
+    /**
+     * content是否为未解析的JSON
+     */
+    public boolean hasRawContent() {
+        return frame != null && contentLength > 0;
+    }
+}
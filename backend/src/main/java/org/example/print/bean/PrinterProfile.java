@@ -0,0 +1,30 @@
+package org.example.print.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.print.render.PaperSize;
+
+import java.time.LocalDateTime;
+
+/**
+ * 打印机能力配置
+ * 每台打印机只识别一次，之后渲染和发送都直接读取
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrinterProfile {
+    private String printerName;            // 打印机名称
+    private PaperSize paperSize;           // 纸宽
+    private String charset;                // 文本编码，热敏打印机一般为GBK
+    private boolean escPos;                // 是否接收ESC/POS原始指令，PDF等驱动打印机为false
+    private boolean rasterImages;          // 是否支持光栅位图（GS v 0）
+    private boolean nativeQrCode;          // 是否支持原生二维码（GS ( k）
+    private boolean nativeBarcode;         // 是否支持原生条码（GS k）
+    private boolean nvImages;              // 是否支持NV位图（FS q / FS p）
+    private boolean cutter;                // 是否带切刀
+    private LocalDateTime detectTime;      // 识别时间
+}
@@ -0,0 +1,16 @@
+package org.example.print.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 任务分页查询结果
+ */
+@Data
+@AllArgsConstructor
+public class TaskPage {
+    private List<PrintTask> tasks;   // 当前页的任务
+    private int total;               // 符合条件的任务总数
+}
@@ -0,0 +1,145 @@
+package org.example.print.component;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 远程请求响应压缩
+ * 请求时声明接受gzip，服务器返回gzip时边读边解压，调用方拿到的仍是原始JSON；
+ * HttpURLConnection本身不处理压缩。同时统计传输的字节数和解压后的字节数
+ */
+@Component
+public class GzipResponseInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final String GZIP = "gzip";
+
+    private final AtomicLong gzipResponses = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!request.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+        }
+        ClientHttpResponse response = execution.execute(request, body);
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || !GZIP.equalsIgnoreCase(encoding.trim())) {
+            return response;
+        }
+        gzipResponses.incrementAndGet();
+        return new GzipResponse(response);
+    }
+
+    public Map<String, Object> getStatistics() {
+        long wire = wireBytes.get();
+        long decoded = decodedBytes.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("gzipResponses", gzipResponses.get());
+        stats.put("wireBytes", wire);
+        stats.put("decodedBytes", decoded);
+        stats.put("savedBytes", decoded - wire);
+        return stats;
+    }
+
+    private class GzipResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private HttpHeaders headers;
+        private InputStream body;
+
+        GzipResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                // 解压后长度不同，去掉编码和长度头
+                HttpHeaders copy = new HttpHeaders();
+                copy.putAll(delegate.getHeaders());
+                copy.remove(HttpHeaders.CONTENT_ENCODING);
+                copy.remove(HttpHeaders.CONTENT_LENGTH);
+                headers = HttpHeaders.readOnlyHttpHeaders(copy);
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                PushbackInputStream raw = new PushbackInputStream(new CountingInputStream(delegate.getBody(), wireBytes), 1);
+                int first = raw.read();
+                if (first == -1) {
+                    // 304等没有响应体
+                    body = raw;
+                } else {
+                    raw.unread(first);
+                    body = new CountingInputStream(new GZIPInputStream(raw, 8192), decodedBytes);
+                }
+            }
+            return body;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.print.component;
+
+import org.example.print.bean.PrintTask;
+import org.example.print.bean.PrintTaskStatus;
+import org.example.print.bean.TaskPage;
+import org.example.print.persistence.ContentCompression;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 未完成任务的内存索引
+ * 由PrintTaskPersistence在保存、更新和完成任务时同步维护，与持久化状态一致；
+ * 查询接口直接遍历内存，不再扫描目录和反序列化文件
+ */
+@Component
+public class PendingTaskIndex {
+
+    // 按加入顺序排列，即任务的创建顺序
+    private final Map<String, PrintTask> tasks = new LinkedHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    void put(PrintTask task) {
+        lock.writeLock().lock();
+        try {
+            tasks.put(task.getTaskId(), task);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 任务不存在时加入
+     *
+     * @return 是否加入
+     */
+    boolean putIfAbsent(PrintTask task) {
+        lock.writeLock().lock();
+        try {
+            return tasks.putIfAbsent(task.getTaskId(), task) == null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String taskId) {
+        lock.writeLock().lock();
+        try {
+            tasks.remove(taskId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 分页查询
+     *
+     * @param status      状态过滤，为空不过滤
+     * @param printerName 打印机过滤，为空不过滤
+     * @param page        页码，从0开始
+     * @param size        每页数量，小于等于0时返回全部
+     */
+    public TaskPage query(PrintTaskStatus status, String printerName, int page, int size) {
+        int offset = size > 0 ? Math.max(page, 0) * size : 0;
+        int limit = size > 0 ? size : Integer.MAX_VALUE;
+        boolean filterPrinter = printerName != null && !printerName.isEmpty();
+
+        List<PrintTask> result = new ArrayList<>(Math.min(limit, 256));
+        int total = 0;
+        lock.readLock().lock();
+        try {
+            for (PrintTask task : tasks.values()) {
+                if (status != null && task.getStatus() != status) {
+                    continue;
+                }
+                if (filterPrinter && !printerName.equals(task.getPrinterName())) {
+                    continue;
+                }
+                if (total >= offset && result.size() < limit) {
+                    result.add(task);
+                }
+                total++;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new TaskPage(result, total);
+    }
+
+    /**
+     * 各状态的任务数
+     */
+    public Map<PrintTaskStatus, Integer> countByStatus() {
+        Map<PrintTaskStatus, Integer> counts = new EnumMap<>(PrintTaskStatus.class);
+        lock.readLock().lock();
+        try {
+            for (PrintTask task : tasks.values()) {
+                if (task.getStatus() != null) {
+                    counts.merge(task.getStatus(), 1, Integer::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    /**
+     * 未完成任务内容占用的内存，按UTF-8字节数统计压缩前后的大小
+     */
+    public Map<String, Long> getContentStatistics() {
+        long packedTasks = 0;
+        long rawBytes = 0;
+        long heapBytes = 0;
+        lock.readLock().lock();
+        try {
+            for (PrintTask task : tasks.values()) {
+                byte[] packed = task.packedContent();
+                if (packed != null) {
+                    packedTasks++;
+                    rawBytes += ContentCompression.rawLength(packed);
+                    heapBytes += packed.length;
+                } else {
+                    String content = task.getContent();
+                    if (content != null) {
+                        // 未压缩的都是短内容，按字符数估算
+                        rawBytes += content.length();
+                        heapBytes += content.length();
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("packedTasks", packedTasks);
+        stats.put("rawBytes", rawBytes);
+        stats.put("heapBytes", heapBytes);
+        stats.put("savedBytes", rawBytes - heapBytes);
+        return stats;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tasks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
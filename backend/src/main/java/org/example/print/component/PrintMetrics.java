@@ -2,6 +2,11 @@ package org.example.print.component;
 
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -13,6 +18,9 @@ public class PrintMetrics {
     private final AtomicLong successTasks = new AtomicLong(0);
     private final AtomicLong failedTasks = new AtomicLong(0);
 
+    // 各门店的任务统计，没有门店的任务以空字符串为键
+    private final Map<String, StoreCounters> stores = new ConcurrentHashMap<>();
+
     public void recordSuccess() {
         totalTasks.incrementAndGet();
         successTasks.incrementAndGet();
@@ -27,4 +35,48 @@ public class PrintMetrics {
         long total = totalTasks.get();
         return total == 0 ? 0 : (double) successTasks.get() / total;
     }
+
+    public void recordStoreReceived(String storeId) {
+        StoreCounters counters = store(storeId);
+        counters.received.incrementAndGet();
+        counters.lastReceivedTime = LocalDateTime.now();
+    }
+
+    public void recordStoreResult(String storeId, boolean success) {
+        StoreCounters counters = store(storeId);
+        if (success) {
+            counters.completed.incrementAndGet();
+        } else {
+            counters.failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * 各门店的接收、完成和失败数，按门店ID排序
+     */
+    public Map<String, Map<String, Object>> getStoreStatistics() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        stores.forEach((storeId, counters) -> stats.put(storeId, counters.toStatistics()));
+        return stats;
+    }
+
+    private StoreCounters store(String storeId) {
+        return stores.computeIfAbsent(storeId != null ? storeId : "", key -> new StoreCounters());
+    }
+
+    private static class StoreCounters {
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile LocalDateTime lastReceivedTime;
+
+        Map<String, Object> toStatistics() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("received", received.get());
+            stats.put("completed", completed.get());
+            stats.put("failed", failed.get());
+            stats.put("lastReceivedTime", lastReceivedTime);
+            return stats;
+        }
+    }
 }
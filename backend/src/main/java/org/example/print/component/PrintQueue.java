@@ -2,38 +2,213 @@ package org.example.print.component;
 
 
 import org.example.print.bean.PrintTask;
+import org.example.print.config.MultiStoreProperties;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 打印队列
+ * 按门店分成多个子队列，门店之间按权重轮流取出任务，一个门店任务积压时不会让其他门店一直等待；
+ * 同一门店内按加入顺序取出。只有一个门店时与普通先进先出队列相同；
+ * 容量按权重分给配置的门店和有任务的门店，超出份额的门店只有在其他门店都没有任务等待时才能借用空位，
+ * 队列被占满时只阻塞或拒绝超出份额的门店
  */
 @Component
 public class PrintQueue {
-    private final BlockingQueue<PrintTask> queue = new LinkedBlockingQueue<>(
-            1000
-    );
+
+    private static final int CAPACITY = 1000;
+    // 没有门店的任务归入同一个子队列
+    private static final String NO_STORE = "";
+
+    private final MultiStoreProperties storeProperties;
+
+    // 有任务等待的门店，第一个是当前轮到的门店
+    private final LinkedHashMap<String, ArrayDeque<PrintTask>> queues = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // 正在等待入队的门店及等待的任务数
+    private final Map<String, Integer> waiting = new HashMap<>();
+    private int count;
+    // 当前门店本轮已取出的任务数
+    private int servedInTurn;
+
+    public PrintQueue(MultiStoreProperties storeProperties) {
+        this.storeProperties = storeProperties;
+    }
 
     public boolean offer(PrintTask task, long timeout, TimeUnit unit) throws InterruptedException {
-        return queue.offer(task, timeout, unit);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            String store = storeOf(task);
+            if (!canAdmit(store)) {
+                addWaiting(store, 1);
+                try {
+                    while (!canAdmit(store)) {
+                        if (nanos <= 0) {
+                            return false;
+                        }
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+                } finally {
+                    addWaiting(store, -1);
+                }
+            }
+            enqueue(store, task);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public PrintTask poll() {
-        return queue.poll();
+        lock.lock();
+        try {
+            Iterator<Map.Entry<String, ArrayDeque<PrintTask>>> iterator = queues.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, ArrayDeque<PrintTask>> current = iterator.next();
+            ArrayDeque<PrintTask> queue = current.getValue();
+            PrintTask task = queue.poll();
+            count--;
+            servedInTurn++;
+            if (queue.isEmpty()) {
+                iterator.remove();
+                servedInTurn = 0;
+            } else if (servedInTurn >= storeProperties.getWeight(current.getKey())) {
+                // 本轮用完，排到最后
+                iterator.remove();
+                queues.put(current.getKey(), queue);
+                servedInTurn = 0;
+            }
+            // 等待的门店各自判断份额，需要全部唤醒
+            notFull.signalAll();
+            return task;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public boolean isEmpty() {
-        return queue.isEmpty();
+        return size() == 0;
     }
 
     public void put(PrintTask task) throws InterruptedException {
-        queue.put(task);
+        lock.lockInterruptibly();
+        try {
+            String store = storeOf(task);
+            if (!canAdmit(store)) {
+                addWaiting(store, 1);
+                try {
+                    while (!canAdmit(store)) {
+                        notFull.await();
+                    }
+                } finally {
+                    addWaiting(store, -1);
+                }
+            }
+            enqueue(store, task);
+        } finally {
+            lock.unlock();
+        }
     }
 
     public int size() {
-        return queue.size();
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 各门店等待中的任务数，没有门店的任务以空字符串为键
+     */
+    public Map<String, Integer> sizeByStore() {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            queues.forEach((store, queue) -> sizes.put(store, queue.size()));
+        } finally {
+            lock.unlock();
+        }
+        return sizes;
+    }
+
+    /**
+     * 门店的容量份额：容量乘以门店权重占配置的门店、有任务的门店和正在等待的门店权重之和的比例，至少为1
+     */
+    public int shareOf(String storeId) {
+        String store = storeId != null ? storeId : NO_STORE;
+        lock.lock();
+        try {
+            return share(store);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canAdmit(String store) {
+        if (count >= CAPACITY) {
+            return false;
+        }
+        ArrayDeque<PrintTask> queue = queues.get(store);
+        if (queue == null || queue.size() < share(store)) {
+            return true;
+        }
+        // 超出份额，只有其他门店都没有任务等待时才借用空位
+        for (Map.Entry<String, ArrayDeque<PrintTask>> entry : queues.entrySet()) {
+            if (!entry.getKey().equals(store)) {
+                return false;
+            }
+        }
+        for (String other : waiting.keySet()) {
+            if (!other.equals(store)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int share(String store) {
+        Set<String> active = new HashSet<>(storeProperties.getStores().keySet());
+        active.addAll(queues.keySet());
+        active.addAll(waiting.keySet());
+        active.add(store);
+        long totalWeight = 0;
+        for (String each : active) {
+            totalWeight += storeProperties.getWeight(each);
+        }
+        return (int) Math.max(CAPACITY * storeProperties.getWeight(store) / totalWeight, 1);
+    }
+
+    private void addWaiting(String store, int delta) {
+        int n = waiting.getOrDefault(store, 0) + delta;
+        if (n > 0) {
+            waiting.put(store, n);
+        } else {
+            waiting.remove(store);
+        }
+    }
+
+    private static String storeOf(PrintTask task) {
+        return task.getStoreId() != null ? task.getStoreId() : NO_STORE;
+    }
+
+    private void enqueue(String store, PrintTask task) {
+        queues.computeIfAbsent(store, key -> new ArrayDeque<>()).add(task);
+        count++;
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package org.example.print.component;
 import lombok.extern.slf4j.Slf4j;
 import org.example.print.bean.PrintTask;
 import org.example.print.bean.PrintTaskStatus;
+import org.example.print.config.MultiStoreProperties;
 import org.example.print.service.PrintTaskNotificationService;
 import org.example.print.service.UnifiedPrintService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,11 +13,18 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,6 +40,7 @@ public class PrintQueueManager {
     private final PrintTaskPersistence printTaskPersistence;
     private final PrintMetrics printMetrics;
     private final PrintTaskNotificationService notificationService;
+    private final MultiStoreProperties storeProperties;
 
     @Value("${print.max-retry:3}")
     private int maxRetry;
@@ -39,6 +48,15 @@ public class PrintQueueManager {
     @Value("${print.queue.offer-timeout:3}")
     private int offerTimeout;
 
+    private final RecoveryProgress recoveryProgress = new RecoveryProgress();
+    // 已保存但入队失败的任务，服务器重新下发时重新入队
+    private final Set<String> rejectedTaskIds = ConcurrentHashMap.newKeySet();
+    private final ExecutorService recoveryExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "task-recovery");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @Autowired
     public PrintQueueManager(
             PrintQueue printQueue,
@@ -46,29 +64,52 @@ public class PrintQueueManager {
             @Qualifier("printTaskExecutor") Executor taskExecutor,
             PrintTaskPersistence printTaskPersistence,
             PrintMetrics printMetrics,
-            PrintTaskNotificationService notificationService) {
+            PrintTaskNotificationService notificationService,
+            MultiStoreProperties storeProperties) {
         this.printQueue = printQueue;
         this.printService = printService;
         this.taskExecutor = taskExecutor;
         this.printTaskPersistence = printTaskPersistence;
         this.printMetrics = printMetrics;
         this.notificationService = notificationService;
+        this.storeProperties = storeProperties;
     }
 
-    // 添加打印任务
-    public void addPrintTask(PrintTask task) {
+    /**
+     * 添加打印任务
+     * 同一任务ID已在等待、打印中或最近已完成时忽略，调用方照常向服务器确认接收；
+     * 之前因队列已满没有入队的任务再次下发时重新入队
+     *
+     * @return 是否为新任务
+     */
+    public boolean addPrintTask(PrintTask task) {
         task.setStatus(PrintTaskStatus.PENDING);
         if (task.getCreateTime() == null) {
             task.setCreateTime(LocalDateTime.now());
         }
+        // 任务没有指定打印机时使用门店配置的打印机
+        if (task.getPrinterName() == null) {
+            task.setPrinterName(storeProperties.getPrinterName(task.getStoreId()));
+        }
+        // 等待打印期间只保留压缩后的内容，打印时再解压
+        task.packContent();
 
         try {
             // 先持久化任务
-            printTaskPersistence.savePendingTask(task);
+            if (!printTaskPersistence.savePendingTaskIfAbsent(task)) {
+                if (!rejectedTaskIds.remove(task.getTaskId())) {
+                    log.info("任务已接收过，忽略重复下发: {}", task.getTaskId());
+                    return false;
+                }
+                // 已保存的是入队失败时的状态，更新为等待打印
+                log.info("任务之前入队失败，重新入队: {}", task.getTaskId());
+                printTaskPersistence.updateTaskStatus(task);
+            }
 
             // 使用带超时的offer，给一个短暂的等待时间
             boolean added = printQueue.offer(task, offerTimeout, TimeUnit.SECONDS);
             if (!added) {
+                rejectedTaskIds.add(task.getTaskId());
                 log.error("队列已满，无法添加任务: {}, 当前队列大小: {}",
                         task.getTaskId(), getQueueSize());
 
@@ -83,11 +124,14 @@ public class PrintQueueManager {
                 throw new PrintQueueFullException("打印队列已满，请稍后重试");
             }
             log.info("成功添加打印任务到队列: {}", task.getTaskId());
+            printMetrics.recordStoreReceived(task.getStoreId());
 
             // 通知客户端和远程服务器任务状态
             notificationService.notifyAll(task);
+            return true;
 
         } catch (InterruptedException e) {
+            rejectedTaskIds.add(task.getTaskId());
             Thread.currentThread().interrupt();
             throw new PrintTaskException("添加打印任务被中断", e);
         }
@@ -103,6 +147,10 @@ public class PrintQueueManager {
             taskExecutor.execute(() -> {
                 try {
                     task.setStatus(PrintTaskStatus.PRINTING);
+                    if (!printTaskPersistence.updateTaskStatus(task)) {
+                        // 打印状态没有落盘，崩溃后无法判断是否已打印，不开始打印
+                        throw new PrintTaskException("任务状态刷盘失败，暂不打印: " + task.getTaskId());
+                    }
 
                     // 通知客户端和远程服务器任务状态
                     notificationService.notifyAll(task);
@@ -122,11 +170,17 @@ public class PrintQueueManager {
                         } else {
                             handleFailedTask(task);
                         }
+                        printMetrics.recordStoreResult(task.getStoreId(), result.isSuccess());
                         // 更新持久化状态
-                        printTaskPersistence.savePendingTask(task);
+                        printTaskPersistence.updateTaskStatus(task);
                     });
+                } catch (RejectedExecutionException e) {
+                    // 线程池正在关闭，打印机没有收到任务，不计为失败，持久化的任务在重启后恢复
+                    log.warn("打印线程池已关闭，任务留待重启后恢复: {}", task.getTaskId());
                 } catch (Exception e) {
+                    log.error("打印任务执行失败: {}", task.getTaskId(), e);
                     handlePrintResult(task, false);
+                    printMetrics.recordStoreResult(task.getStoreId(), false);
                     handleFailedTask(task);
                 }
             });
@@ -170,6 +224,10 @@ public class PrintQueueManager {
 
     // 添加自定义异常
     public static class PrintTaskException extends RuntimeException {
+        public PrintTaskException(String message) {
+            super(message);
+        }
+
         public PrintTaskException(String message, Throwable cause) {
             super(message, cause);
         }
@@ -180,19 +238,78 @@ public class PrintQueueManager {
         return printQueue.size();
     }
 
-    // 在系统启动时加载未完成的任务
+    // 各门店的任务统计和等待中的任务数
+    public Map<String, Map<String, Object>> getStoreStatistics() {
+        Map<String, Map<String, Object>> stats = printMetrics.getStoreStatistics();
+        Map<String, Integer> queued = printQueue.sizeByStore();
+        for (Map.Entry<String, Integer> entry : queued.entrySet()) {
+            stats.computeIfAbsent(entry.getKey(), key -> new LinkedHashMap<>()).put("queued", entry.getValue());
+        }
+        for (Map.Entry<String, Map<String, Object>> entry : stats.entrySet()) {
+            entry.getValue().putIfAbsent("queued", 0);
+            entry.getValue().put("printerName", storeProperties.getPrinterName(entry.getKey()));
+            entry.getValue().put("weight", storeProperties.getWeight(entry.getKey()));
+            entry.getValue().put("queueShare", printQueue.shareOf(entry.getKey()));
+        }
+        return stats;
+    }
+
+    // 获取启动恢复进度
+    public RecoveryProgress getRecoveryProgress() {
+        return recoveryProgress;
+    }
+
+    // 在系统启动时后台恢复未完成的任务，恢复出的任务立即入队，不阻塞应用启动
     @PostConstruct
     public void init() {
-        List<PrintTask> pendingTasks = printTaskPersistence.loadPendingTasks();
-        pendingTasks.forEach(task -> {
+        recoveryExecutor.execute(() -> {
             try {
-                printQueue.put(task);
-                log.info("成功加载持久化任务: {}", task.getTaskId());
-            } catch (InterruptedException e) {
-                log.error("加载持久化任务失败: {}", task.getTaskId(), e);
-                Thread.currentThread().interrupt();
+                printTaskPersistence.recoverPendingTasks(task -> {
+                    try {
+                        printQueue.put(task);
+                        log.debug("成功加载持久化任务: {}", task.getTaskId());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new PrintTaskException("加载持久化任务被中断: " + task.getTaskId(), e);
+                    }
+                    notifyRecoveryProgress();
+                }, recoveryProgress);
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("应用关闭，停止恢复未完成任务，剩余任务下次启动时恢复");
+                } else {
+                    log.error("恢复未完成任务失败", e);
+                }
             }
+            notifyRecoveryProgress();
         });
+        recoveryExecutor.shutdown();
+    }
+
+    // 应用关闭时中断恢复，等待恢复线程退出后再关闭持久化存储
+    @PreDestroy
+    public void destroy() {
+        recoveryExecutor.shutdownNow();
+        try {
+            if (!recoveryExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("等待任务恢复线程退出超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 每恢复一定数量的任务向客户端推送一次进度
+    private void notifyRecoveryProgress() {
+        int done = recoveryProgress.getRecovered();
+        if (recoveryProgress.isRunning() && done % 100 != 0) {
+            return;
+        }
+        try {
+            notificationService.sendWebSocketMessage("/topic/recovery-progress", recoveryProgress);
+        } catch (Exception e) {
+            log.debug("推送任务恢复进度失败", e);
+        }
     }
 
     private void handlePrintResult(PrintTask task, boolean success) {
@@ -4,40 +4,123 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.example.print.bean.PrintTask;
 import org.example.print.bean.PrintTaskStatus;
+import org.example.print.bean.TaskPage;
+import org.example.print.persistence.PrintTaskCodec;
+import org.example.print.persistence.TaskArchive;
+import org.example.print.persistence.TaskJournal;
+import org.example.print.persistence.TaskStateTable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * 打印任务持久化
+ * 任务的每次状态变化作为一条记录追加到日志中，不再为每个任务单独写文件和移动文件；
+ * 内存中保存未完成任务的最新记录，定期压缩为快照，已完成的任务在压缩时批量写入已完成目录。
+ * 任务内容只在首次保存时写入日志，之后的状态和重试次数变化在内存映射的状态表中原地更新。
+ * 保存和完成先记入脏任务表，由定时刷写合并写入日志并统一刷盘；任务开始打印前强制刷写，
+ * 保证打印出去的任务一定能从日志中恢复
  */
 @Component
 @Slf4j
 public class PrintTaskPersistence {
+
+    // 日志记录类型
+    private static final byte RECORD_SAVE = 1;
+    private static final byte RECORD_COMPLETE = 2;
+
+    // 记住的最近完成任务数
+    private static final int RECENTLY_COMPLETED_LIMIT = 10000;
+
     // 使用配置的数据目录
     @Value("${app.data.dir:./data}")
     private String baseDir;
 
+    // 日志段大小(字节)
+    @Value("${print.journal.segment-size:4194304}")
+    private long segmentSize;
+
+    // 写入后是否等待刷盘
+    @Value("${print.journal.fsync:true}")
+    private boolean fsync;
+
+    // 状态表槽位数，即同时未完成任务数的上限，超出后状态变化按完整任务写入日志
+    @Value("${print.state-table.slots:4096}")
+    private int stateSlots;
+
+    // 任务记录格式：binary为紧凑二进制编码，json为JSON文本；读取时自动识别，两种格式可以混合存在
+    @Value("${print.persistence.format:binary}")
+    private String format;
+
+    // 启动恢复时每批并行解码的任务数
+    @Value("${print.recovery.batch-size:64}")
+    private int recoveryBatchSize;
+
+    // 是否延迟合并写入，关闭后每次保存和完成立即写入日志并刷盘
+    @Value("${print.persistence.write-behind:true}")
+    private boolean writeBehind;
+
+    // 已完成任务归档保留天数
+    @Value("${print.archive.retention-days:7}")
+    private int retentionDays;
+
     private String taskDir;
     private String completedDir;
     private String errorDir;
+    private String journalDir;
 
     private final ObjectMapper objectMapper;
+    private final PendingTaskIndex pendingTaskIndex;
+
+    private TaskJournal journal;
+    private TaskStateTable stateTable;
+    private TaskArchive archive;
+
+    // 未完成任务的最新记录，按加入顺序排列
+    private final Map<String, byte[]> liveTasks = new LinkedHashMap<>();
+    // 上次压缩后完成的任务
+    private final List<byte[]> completedTasks = new ArrayList<>();
+    // 尚未写入日志的保存和完成，同一任务只保留最新一次
+    private final Map<String, DirtyTask> dirtyTasks = new LinkedHashMap<>();
+    // 最近完成的任务ID，用于识别服务器重复下发的任务
+    private final Map<String, Boolean> recentlyCompleted = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENTLY_COMPLETED_LIMIT;
+        }
+    };
+    // 保证内存状态与日志顺序一致，压缩时据此生成快照
+    private final Object stateLock = new Object();
+    // 上次压缩时的日志位置
+    private long compactedPosition;
 
     @Autowired
-    public PrintTaskPersistence(ObjectMapper objectMapper) {
+    public PrintTaskPersistence(ObjectMapper objectMapper, PendingTaskIndex pendingTaskIndex) {
         this.objectMapper = objectMapper;
+        this.pendingTaskIndex = pendingTaskIndex;
         // 不要在构造函数中初始化目录
     }
 
@@ -47,77 +130,222 @@ public class PrintTaskPersistence {
         taskDir = baseDir + "/print_tasks";
         completedDir = baseDir + "/completed_tasks";
         errorDir = baseDir + "/error_tasks";
+        journalDir = baseDir + "/journal";
 
         // 创建目录
         initDirectories();
-        log.info("数据目录初始化完成: baseDir={}, taskDir={}, completedDir={}, errorDir={}",
-                baseDir, taskDir, completedDir, errorDir);
+        log.info("数据目录初始化完成: baseDir={}, journalDir={}, completedDir={}, errorDir={}",
+                baseDir, journalDir, completedDir, errorDir);
+
+        archive = new TaskArchive(new File(completedDir), objectMapper);
+        journal = new TaskJournal(new File(journalDir), segmentSize, fsync);
+        try {
+            journal.open(this::applyRecord);
+        } catch (IOException e) {
+            throw new IllegalStateException("打开任务日志失败: " + journalDir, e);
+        }
+        log.info("任务日志重放完成: 未完成任务{}个, 待归档任务{}个", liveTasks.size(), completedTasks.size());
+
+        try {
+            stateTable = TaskStateTable.open(new File(baseDir, "task_state.dat"), stateSlots);
+        } catch (IOException e) {
+            throw new IllegalStateException("打开任务状态表失败: " + baseDir, e);
+        }
+        int orphans = stateTable.retain(liveTasks.keySet());
+        if (orphans > 0) {
+            log.info("已释放已完成任务的状态槽位: {}个", orphans);
+        }
+
+        migrateLegacyTasks();
+        compact(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushDirtyTasks();
+        stateTable.force();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.error("关闭任务日志失败", e);
+        }
     }
 
     private void initDirectories() {
         // 确保基础目录存在
         new File(baseDir).mkdirs();
-        new File(taskDir).mkdirs();
         new File(completedDir).mkdirs();
         new File(errorDir).mkdirs();
+        new File(journalDir).mkdirs();
 
         log.info("已创建所有必要目录");
     }
 
     // 保存任务
     public void savePendingTask(PrintTask task) {
-        String fileName = generateFileName(task);
-        saveTaskToFile(new File(taskDir, fileName), task);
+        if (task.getStatus() == PrintTaskStatus.COMPLETED) {
+            // 已完成的任务不再作为待处理任务保存
+            markTaskAsCompleted(task);
+            return;
+        }
+        markDirty(task, true);
+        if (!writeBehind) {
+            flushDirtyTasks();
+        }
     }
 
     /**
-     * 加载待处理任务
-     * 该方法会从待处理目录中读取所有任务，并进行状态验证
+     * 保存新接收的任务，同一任务ID已在未完成任务中或最近已完成时不保存
+     * 服务器确认接收失败、落盘后确认前进程退出、推送和轮询同时下发都会收到重复的任务
+     *
+     * @return 是否为新任务
      */
-    public List<PrintTask> loadPendingTasks() {
-        List<PrintTask> tasks = new ArrayList<>();
-        File pendingDir = new File(taskDir);
+    public boolean savePendingTaskIfAbsent(PrintTask task) {
+        synchronized (stateLock) {
+            String taskId = task.getTaskId();
+            if (liveTasks.containsKey(taskId) || dirtyTasks.containsKey(taskId)
+                    || recentlyCompleted.containsKey(taskId)) {
+                return false;
+            }
+            markDirty(task, true);
+        }
+        if (!writeBehind) {
+            flushDirtyTasks();
+        }
+        return true;
+    }
 
-        if (!pendingDir.exists()) {
-            log.info("待处理任务目录不存在，跳过加载");
-            return tasks;
+    /**
+     * 记录需要写入完整内容的任务，刷写时按当时的最新状态编码
+     *
+     * @param track 是否加入未完成任务索引，启动时导入的任务由恢复流程加入
+     */
+    private void markDirty(PrintTask task, boolean track) {
+        synchronized (stateLock) {
+            dirtyTasks.put(task.getTaskId(), new DirtyTask(task, false));
+            if (track) {
+                pendingTaskIndex.put(task);
+            }
         }
+    }
 
-        File[] files = pendingDir.listFiles((dir, name) -> name.endsWith(".json"));
-        if (files == null) {
-            log.warn("无法读取待处理任务目录");
-            return tasks;
+    /**
+     * 更新任务状态和重试次数
+     * 任务内容尚未写入日志时只更新脏任务，已经写入时只修改状态表中的几个字节，否则按完整任务保存。
+     * 进入打印状态前把状态和尚未写入的内容刷盘
+     *
+     * @return 进入打印状态时是否已经落盘，返回false时不能开始打印；其他状态总是返回true
+     */
+    public boolean updateTaskStatus(PrintTask task) {
+        if (task.getStatus() == PrintTaskStatus.COMPLETED) {
+            markTaskAsCompleted(task);
+            return true;
+        }
+        boolean printing = task.getStatus() == PrintTaskStatus.PRINTING;
+        synchronized (stateLock) {
+            DirtyTask dirty = dirtyTasks.get(task.getTaskId());
+            boolean pendingWrite = dirty != null && !dirty.isCompleted();
+            if (!pendingWrite && liveTasks.containsKey(task.getTaskId())
+                    && stateTable.put(task.getTaskId(), task.getStatus(), task.getRetryCount())) {
+                pendingTaskIndex.put(task);
+                return !printing || forceStateTable();
+            }
+            // 内容尚未写入日志或状态表已满，按完整任务保存
+            dirtyTasks.put(task.getTaskId(), new DirtyTask(task, false));
+            pendingTaskIndex.put(task);
         }
+        if (printing) {
+            return !persistNow(Collections.singletonList(task.getTaskId())).isEmpty();
+        }
+        if (!writeBehind) {
+            flushDirtyTasks();
+        }
+        return true;
+    }
 
-        for (File file : files) {
-            try {
-                PrintTask task = objectMapper.readValue(file, PrintTask.class);
+    private boolean forceStateTable() {
+        try {
+            stateTable.force();
+            return true;
+        } catch (RuntimeException e) {
+            log.error("任务状态表刷盘失败", e);
+            return false;
+        }
+    }
 
-                // 验证任务状态
-                if (task.getStatus() == PrintTaskStatus.COMPLETED) {
-                    // 如果发现已完成的任务，将其移动到已完成目录
-                    moveToCompletedDirectory(file, task);
-                    continue;
-                }
+    /**
+     * 恢复未完成任务
+     * 日志重放时只记录各任务的原始数据，这里按加入顺序分批并行解码，每批解码后立即交给调用方，
+     * 调用方入队阻塞时后续批次暂不解码；过期任务标记为完成
+     *
+     * @param consumer 接收恢复的任务，按原加入顺序调用
+     */
+    public void recoverPendingTasks(Consumer<PrintTask> consumer, RecoveryProgress progress) {
+        List<byte[]> payloads;
+        synchronized (stateLock) {
+            payloads = new ArrayList<>(liveTasks.values());
+        }
+        progress.start(payloads.size());
+        log.info("开始恢复未完成任务: {}个", payloads.size());
 
-                // 检查任务是否过期（例如24小时未处理的任务）
-                if (isTaskExpired(task)) {
-                    log.warn("任务已过期: {}", task.getTaskId());
-                    moveToCompletedDirectory(file, task);
-                    continue;
+        try {
+            for (int from = 0; from < payloads.size(); from += recoveryBatchSize) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // 应用关闭，剩余任务仍在日志中，下次启动时恢复
+                    log.info("任务恢复被中断，已处理{}个", from);
+                    break;
                 }
+                List<PrintTask> batch = payloads.subList(from, Math.min(from + recoveryBatchSize, payloads.size()))
+                        .parallelStream()
+                        .map(this::decodeQuietly)
+                        .collect(Collectors.toList());
 
-                tasks.add(task);
-                log.info("成功加载待处理任务: {}", task.getTaskId());
+                for (PrintTask task : batch) {
+                    if (task == null) {
+                        progress.recordFailed();
+                        continue;
+                    }
+                    applyState(task);
 
-            } catch (IOException e) {
-                log.error("加载任务失败: {}", file.getName(), e);
-                // 对于损坏的文件，可以选择移动到一个特殊的错误目录中
-                moveToErrorDirectory(file);
+                    // 完成记录尚未写入日志时进程退出，状态表中已经是完成状态
+                    if (task.getStatus() == PrintTaskStatus.COMPLETED) {
+                        markTaskAsCompleted(task);
+                        progress.recordCompleted();
+                        continue;
+                    }
+
+                    // 检查任务是否过期（例如24小时未处理的任务）
+                    if (isTaskExpired(task)) {
+                        log.warn("任务已过期: {}", task.getTaskId());
+                        markTaskAsCompleted(task);
+                        progress.recordExpired();
+                        continue;
+                    }
+
+                    synchronized (stateLock) {
+                        // 恢复期间已被重新提交或已完成的任务不再重复加入
+                        if (!liveTasks.containsKey(task.getTaskId()) || !pendingTaskIndex.putIfAbsent(task)) {
+                            continue;
+                        }
+                    }
+                    consumer.accept(task);
+                    progress.recordRecovered();
+                }
             }
+        } finally {
+            progress.finish();
         }
+        log.info("未完成任务恢复完成: 恢复{}个, 过期{}个, 已完成{}个, 失败{}个",
+                progress.getRecovered(), progress.getExpired(), progress.getCompleted(), progress.getFailed());
+    }
 
-        return tasks;
+    private PrintTask decodeQuietly(byte[] payload) {
+        try {
+            return deserialize(payload);
+        } catch (IOException e) {
+            log.error("还原任务失败", e);
+            return null;
+        }
     }
 
     /**
@@ -128,20 +356,336 @@ public class PrintTaskPersistence {
         return LocalDateTime.now().isAfter(expirationTime);
     }
 
+    // 标记任务为已完成
+    public void markTaskAsCompleted(PrintTask task) {
+        boolean flushNow = false;
+        try {
+            byte[] payload = serialize(task);
+            synchronized (stateLock) {
+                String taskId = task.getTaskId();
+                DirtyTask dirty = dirtyTasks.get(taskId);
+                boolean live = liveTasks.containsKey(taskId);
+                if (!live && (dirty == null || dirty.isCompleted())) {
+                    // 已经标记过
+                    return;
+                }
+                completedTasks.add(payload);
+                recentlyCompleted.put(taskId, Boolean.TRUE);
+                pendingTaskIndex.remove(taskId);
+                if (!live) {
+                    // 内容还没有写入日志，保存和完成一起省去
+                    dirtyTasks.remove(taskId);
+                    stateTable.remove(taskId);
+                } else {
+                    // 完成记录写入日志前先在状态表中标记，进程崩溃后恢复时不会重复打印
+                    liveTasks.remove(taskId);
+                    dirtyTasks.put(taskId, new DirtyTask(task, true));
+                    if (!stateTable.put(taskId, PrintTaskStatus.COMPLETED, task.getRetryCount())) {
+                        // 状态表已满时没有完成标记，立即写入完成记录，缩短崩溃后重复打印的窗口
+                        log.warn("任务状态表已满，立即写入完成记录: {}", taskId);
+                        flushNow = true;
+                    }
+                }
+            }
+            log.info("任务已标记为完成: {}", task.getTaskId());
+        } catch (IOException e) {
+            log.error("标记任务完成失败: {}", task.getTaskId(), e);
+        }
+        if (!writeBehind || flushNow) {
+            flushDirtyTasks();
+        }
+    }
+
     /**
-     * 将文件移动到已完成目录
+     * 把脏任务按标记顺序写入日志并刷盘，同一批只刷盘一次
      */
-    private void moveToCompletedDirectory(File file, PrintTask task) {
+    @Scheduled(fixedDelayString = "${print.persistence.flush-interval:200}")
+    public void flushDirtyTasks() {
+        flushAndSync();
+    }
+
+    /**
+     * 立即把指定任务写入日志并刷盘，用于在向服务器确认接收前保证任务不会丢失
+     *
+     * @return 已经落盘的任务ID
+     */
+    public List<String> persistNow(Collection<String> taskIds) {
+        List<String> persisted = new ArrayList<>(taskIds.size());
+        if (!flushAndSync()) {
+            return persisted;
+        }
+        synchronized (stateLock) {
+            for (String taskId : taskIds) {
+                DirtyTask dirty = dirtyTasks.get(taskId);
+                // 仍未写入的是刚被其他线程再次修改的任务，下次再确认
+                if (dirty == null || dirty.isCompleted()) {
+                    persisted.add(taskId);
+                }
+            }
+        }
+        return persisted;
+    }
+
+    /**
+     * 写入脏任务并等待日志刷盘，包括其他线程已写入但尚未刷盘的记录
+     *
+     * @return 是否刷盘成功
+     */
+    private boolean flushAndSync() {
+        List<String> completedIds = new ArrayList<>();
+        long position;
+        synchronized (stateLock) {
+            flushLocked(completedIds);
+            position = journal.getWrittenBytes();
+        }
         try {
-            File targetFile = new File(completedDir, file.getName());
-            Files.move(file.toPath(), targetFile.toPath(),
-                    StandardCopyOption.REPLACE_EXISTING);
-            log.info("任务已移动到已完成目录: {}", task.getTaskId());
+            journal.sync(position);
+        } catch (IOException e) {
+            log.error("任务日志刷盘失败", e);
+            return false;
+        }
+        if (!completedIds.isEmpty()) {
+            // 完成记录已经落盘，释放状态槽位
+            synchronized (stateLock) {
+                releaseSlots(completedIds);
+            }
+        }
+        return true;
+    }
+
+    // 释放已完成任务的状态槽位，期间被重新提交的任务除外
+    private void releaseSlots(List<String> completedIds) {
+        for (String taskId : completedIds) {
+            if (!liveTasks.containsKey(taskId) && !dirtyTasks.containsKey(taskId)) {
+                stateTable.remove(taskId);
+            }
+        }
+    }
+
+    /**
+     * 在stateLock内把脏任务追加到日志，写入失败的任务留到下次
+     */
+    private void flushLocked(List<String> completedIds) {
+        Iterator<Map.Entry<String, DirtyTask>> iterator = dirtyTasks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, DirtyTask> entry = iterator.next();
+            String taskId = entry.getKey();
+            PrintTask task = entry.getValue().getTask();
+            try {
+                if (entry.getValue().isCompleted()) {
+                    journal.append(RECORD_COMPLETE, taskId.getBytes(StandardCharsets.UTF_8));
+                    completedIds.add(taskId);
+                } else {
+                    byte[] payload = serialize(task);
+                    journal.append(RECORD_SAVE, payload);
+                    PrintTaskCodec.recordDisk(payload);
+                    liveTasks.put(taskId, payload);
+                    if (task.getStatus() != null) {
+                        stateTable.put(taskId, task.getStatus(), task.getRetryCount());
+                    }
+                }
+            } catch (IOException e) {
+                log.error("任务持久化失败: {}", taskId, e);
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 定期压缩日志：把未完成任务写成快照，已完成任务写入已完成目录，删除旧的日志段
+     */
+    @Scheduled(fixedDelayString = "${print.journal.compact-interval:60000}")
+    public void compactJournal() {
+        compact(false);
+    }
+
+    private void compact(boolean force) {
+        long upToSegment;
+        List<TaskJournal.Record> records;
+        List<byte[]> archived;
+        try {
+            synchronized (stateLock) {
+                // 快照只包含已写入日志的任务，先把脏任务写入
+                List<String> completedIds = new ArrayList<>();
+                flushLocked(completedIds);
+                if (!force && journal.getWrittenBytes() == compactedPosition) {
+                    return;
+                }
+                upToSegment = journal.roll();
+                // 切换段时已刷盘
+                releaseSlots(completedIds);
+                records = new ArrayList<>(liveTasks.size());
+                for (byte[] payload : liveTasks.values()) {
+                    records.add(new TaskJournal.Record(RECORD_SAVE, payload));
+                }
+                archived = new ArrayList<>(completedTasks);
+                completedTasks.clear();
+                compactedPosition = journal.getWrittenBytes();
+            }
         } catch (IOException e) {
-            log.error("移动已完成任务失败: {}", task.getTaskId(), e);
+            log.error("切换任务日志段失败", e);
+            return;
+        }
+
+        try {
+            archiveCompletedTasks(archived);
+        } catch (IOException e) {
+            log.error("归档已完成任务失败，保留日志段等待下次压缩", e);
+            synchronized (stateLock) {
+                completedTasks.addAll(0, archived);
+                compactedPosition = -1;
+            }
+            return;
+        }
+
+        try {
+            journal.writeSnapshot(upToSegment, records);
+            // 状态表随快照一起刷盘
+            stateTable.force();
+            log.info("任务日志压缩完成: 未完成任务{}个, 归档任务{}个", records.size(), archived.size());
+        } catch (IOException e) {
+            log.error("写入任务日志快照失败", e);
         }
     }
 
+    /**
+     * 已完成任务按创建日期追加到归档
+     */
+    private void archiveCompletedTasks(List<byte[]> archived) throws IOException {
+        List<PrintTask> tasks = new ArrayList<>(archived.size());
+        for (byte[] payload : archived) {
+            // 重放得到的记录可能还是完成前的状态
+            PrintTask task = deserialize(payload);
+            task.setStatus(PrintTaskStatus.COMPLETED);
+            tasks.add(task);
+        }
+        archive.append(tasks);
+    }
+
+    /**
+     * 已归档的日期，按日期倒序
+     */
+    public List<LocalDate> getArchivedDays() {
+        return archive.listDays();
+    }
+
+    /**
+     * 分页查询某天的已完成任务
+     */
+    public TaskPage queryArchivedTasks(LocalDate day, int page, int size) throws IOException {
+        return archive.query(day, page, size);
+    }
+
+    // 按配置的格式序列化任务
+    private byte[] serialize(PrintTask task) throws IOException {
+        if ("json".equalsIgnoreCase(format)) {
+            return objectMapper.writeValueAsBytes(task);
+        }
+        return PrintTaskCodec.encode(task);
+    }
+
+    // 根据首字节识别格式
+    private PrintTask deserialize(byte[] payload) throws IOException {
+        if (!PrintTaskCodec.isBinary(payload)) {
+            return objectMapper.readValue(payload, PrintTask.class);
+        }
+        try {
+            return PrintTaskCodec.decode(payload);
+        } catch (RuntimeException e) {
+            throw new IOException("任务记录解码失败", e);
+        }
+    }
+
+    // 叠加状态表中的状态和重试次数
+    private void applyState(PrintTask task) {
+        TaskStateTable.State state = stateTable.get(task.getTaskId());
+        if (state != null) {
+            task.setStatus(state.getStatus());
+            task.setRetryCount(state.getRetryCount());
+        }
+    }
+
+    private void applyRecord(byte type, byte[] payload) {
+        if (type == RECORD_SAVE) {
+            try {
+                // 二进制记录只读取任务ID，内容在恢复时再解码
+                String taskId = PrintTaskCodec.isBinary(payload)
+                        ? PrintTaskCodec.readTaskId(payload)
+                        : deserialize(payload).getTaskId();
+                liveTasks.put(taskId, payload);
+            } catch (IOException | RuntimeException e) {
+                log.error("日志中的任务记录无法解析，已忽略", e);
+            }
+        } else if (type == RECORD_COMPLETE) {
+            String taskId = new String(payload, StandardCharsets.UTF_8);
+            recentlyCompleted.put(taskId, Boolean.TRUE);
+            byte[] completed = liveTasks.remove(taskId);
+            if (completed != null) {
+                completedTasks.add(completed);
+            }
+        } else {
+            log.warn("未知的日志记录类型: {}", type);
+        }
+    }
+
+    /**
+     * 导入旧版本每个任务一个JSON文件的待处理任务
+     */
+    private void migrateLegacyTasks() {
+        File[] files = new File(taskDir).listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        // 并行解析文件，按原顺序写入日志
+        List<PrintTask> tasks = Arrays.stream(files)
+                .parallel()
+                .map(file -> {
+                    try {
+                        return objectMapper.readValue(file, PrintTask.class);
+                    } catch (IOException e) {
+                        log.error("导入任务失败: {}", file.getName(), e);
+                        return null;
+                    }
+                })
+                .collect(Collectors.toList());
+
+        List<String> imported = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            PrintTask task = tasks.get(i);
+            if (task == null) {
+                moveToErrorDirectory(files[i]);
+                continue;
+            }
+            if (task.getStatus() != PrintTaskStatus.COMPLETED) {
+                markDirty(task, false);
+                imported.add(task.getTaskId());
+            }
+        }
+
+        // 写入日志并刷盘后才删除旧文件，失败时保留，下次启动重新导入
+        Set<String> persisted = new HashSet<>(persistNow(imported));
+        int deleted = 0;
+        for (int i = 0; i < files.length; i++) {
+            PrintTask task = tasks.get(i);
+            if (task == null) {
+                continue;
+            }
+            if (task.getStatus() != PrintTaskStatus.COMPLETED && !persisted.contains(task.getTaskId())) {
+                log.warn("旧版任务文件未能写入日志，暂不删除: {}", files[i].getName());
+                continue;
+            }
+            try {
+                Files.delete(files[i].toPath());
+                deleted++;
+            } catch (IOException e) {
+                log.error("删除已导入的任务文件失败: {}", files[i].getName(), e);
+            }
+        }
+        log.info("已导入旧版任务文件: {}个, 已删除: {}个", imported.size(), deleted);
+    }
+
     /**
      * 将损坏的文件移动到错误目录
      */
@@ -156,55 +700,44 @@ public class PrintTaskPersistence {
         }
     }
 
-    // 标记任务为已完成
-    public void markTaskAsCompleted(PrintTask task) {
-        String fileName = generateFileName(task);
-        File sourceFile = new File(taskDir, fileName);
-        File targetFile = new File(completedDir, fileName);
-
-        try {
-            if (sourceFile.exists()) {
-                Files.move(sourceFile.toPath(), targetFile.toPath(),
-                        StandardCopyOption.REPLACE_EXISTING);
-                log.info("任务已标记为完成: {}", task.getTaskId());
-            }
-        } catch (IOException e) {
-            log.error("标记任务完成失败: {}", task.getTaskId(), e);
-        }
-    }
-
     // 清理已完成的任务
     @Scheduled(cron = "0 0 0 * * ?")  // 每天零点执行
     public void cleanupCompletedTasks() {
-        File completedDirFile = new File(completedDir);
-        if (completedDirFile.exists()) {
-            File[] files = completedDirFile.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.lastModified() < System.currentTimeMillis() - 7 * 24 * 60 * 60 * 1000) {
-                        if (file.delete()) {
-                            log.info("清理已完成任务: {}", file.getName());
-                        }
-                    }
+        // 按天删除整个归档文件
+        archive.dropBefore(LocalDate.now().minusDays(retentionDays));
+
+        // 旧版本遗留的单任务文件和批量归档文件，过期后逐个删除
+        long cutoff = System.currentTimeMillis() - retentionDays * 24L * 60 * 60 * 1000;
+        File[] legacyFiles = new File(completedDir).listFiles((dir, name) ->
+                name.startsWith("completed_") || name.endsWith(".json"));
+        if (legacyFiles != null) {
+            for (File file : legacyFiles) {
+                if (file.lastModified() < cutoff && file.delete()) {
+                    log.info("清理已完成任务: {}", file.getName());
                 }
             }
         }
     }
 
-    // 生成文件名
-    private String generateFileName(PrintTask task) {
-        return String.format("%s_%s.json",
-                task.getTaskId(),
-                task.getCreateTime().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")));
-    }
+    /**
+     * 尚未写入日志的任务
+     */
+    private static class DirtyTask {
+        private final PrintTask task;
+        // true为完成记录，false为完整内容
+        private final boolean completed;
 
-    // 保存任务到文件
-    private void saveTaskToFile(File file, PrintTask task) {
-        try {
-            objectMapper.writeValue(file, task);
-            log.info("任务持久化成功: {}", file.getName());
-        } catch (IOException e) {
-            log.error("任务持久化失败: {}", task.getTaskId(), e);
+        DirtyTask(PrintTask task, boolean completed) {
+            this.task = task;
+            this.completed = completed;
+        }
+
+        PrintTask getTask() {
+            return task;
+        }
+
+        boolean isCompleted() {
+            return completed;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package org.example.print.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.bean.PrinterProfile;
+import org.example.print.config.PrinterProfileProperties;
+import org.example.print.render.PaperSize;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.print.DocFlavor;
+import javax.print.PrintService;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 打印机能力注册表
+ * 每台打印机第一次使用时识别能力并缓存，之后的打印任务直接读取缓存
+ */
+@Component
+@Slf4j
+public class PrinterProfileRegistry {
+
+    // 只能通过驱动打印、不接收ESC/POS指令的虚拟打印机名称关键字
+    private static final String[] DRIVER_ONLY_KEYWORDS = {"pdf", "xps", "onenote", "fax"};
+
+    private final PrinterProfileProperties properties;
+    private final Map<String, PrinterProfile> profiles = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PrinterProfileRegistry(PrinterProfileProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 获取打印机能力，首次访问时识别
+     */
+    public PrinterProfile getProfile(PrintService printService) {
+        return profiles.computeIfAbsent(printService.getName(), name -> detect(printService));
+    }
+
+    /**
+     * 获取所有已识别的打印机能力
+     */
+    public Collection<PrinterProfile> getProfiles() {
+        return Collections.unmodifiableCollection(profiles.values());
+    }
+
+    /**
+     * 清除缓存，下次使用时重新识别
+     *
+     * @param printerName 打印机名称，为空时清除全部
+     */
+    public void invalidate(String printerName) {
+        if (printerName == null || printerName.isEmpty()) {
+            profiles.clear();
+        } else {
+            profiles.remove(printerName);
+        }
+    }
+
+    private PrinterProfile detect(PrintService printService) {
+        String name = printService.getName();
+        PrinterProfileProperties.Settings defaults = properties.getDefaults();
+        PrinterProfileProperties.Settings override = properties.getPrinters().get(name);
+        if (override == null) {
+            override = new PrinterProfileProperties.Settings();
+        }
+
+        Boolean configuredEscPos = pick(override.getEscPos(), defaults.getEscPos(), null);
+        boolean escPos = configuredEscPos != null ? configuredEscPos : detectEscPos(printService);
+
+        PrinterProfile profile = PrinterProfile.builder()
+                .printerName(name)
+                .paperSize(PaperSize.fromMillimeters(pick(override.getPaperWidth(), defaults.getPaperWidth(), 58)))
+                .charset(pick(override.getCharset(), defaults.getCharset(), "GBK"))
+                .escPos(escPos)
+                // 驱动打印机不接收原始指令，以下能力均不可用
+                .rasterImages(escPos && pick(override.getRasterImages(), defaults.getRasterImages(), true))
+                .nativeQrCode(escPos && pick(override.getNativeQrcode(), defaults.getNativeQrcode(), false))
+                .nativeBarcode(escPos && pick(override.getNativeBarcode(), defaults.getNativeBarcode(), false))
+                .nvImages(escPos && pick(override.getNvImages(), defaults.getNvImages(), false))
+                .cutter(escPos && pick(override.getCutter(), defaults.getCutter(), false))
+                .detectTime(LocalDateTime.now())
+                .build();
+
+        log.info("已识别打印机能力: {}", profile);
+        return profile;
+    }
+
+    /**
+     * 识别是否为ESC/POS打印机：排除常见虚拟打印机，且需要支持原始字节流
+     */
+    private boolean detectEscPos(PrintService printService) {
+        String lowerName = printService.getName().toLowerCase();
+        for (String keyword : DRIVER_ONLY_KEYWORDS) {
+            if (lowerName.contains(keyword)) {
+                return false;
+            }
+        }
+        return printService.isDocFlavorSupported(DocFlavor.BYTE_ARRAY.AUTOSENSE);
+    }
+
+    private static <T> T pick(T override, T defaultValue, T fallback) {
+        if (override != null) {
+            return override;
+        }
+        return defaultValue != null ? defaultValue : fallback;
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.print.component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动时恢复未完成任务的进度
+ */
+public class RecoveryProgress {
+
+    private volatile boolean running;
+    private volatile int total;
+    private final AtomicInteger recovered = new AtomicInteger();
+    private final AtomicInteger expired = new AtomicInteger();
+    // 状态表中已完成、只差写入完成记录的任务
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile LocalDateTime startTime;
+    private volatile LocalDateTime finishTime;
+
+    void start(int total) {
+        this.total = total;
+        this.startTime = LocalDateTime.now();
+        this.running = true;
+    }
+
+    void finish() {
+        this.finishTime = LocalDateTime.now();
+        this.running = false;
+    }
+
+    void recordRecovered() {
+        recovered.incrementAndGet();
+    }
+
+    void recordExpired() {
+        expired.incrementAndGet();
+    }
+
+    void recordCompleted() {
+        completed.incrementAndGet();
+    }
+
+    void recordFailed() {
+        failed.incrementAndGet();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getRecovered() {
+        return recovered.get();
+    }
+
+    public int getExpired() {
+        return expired.get();
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * 已处理的百分比
+     */
+    public int getPercent() {
+        if (total == 0) {
+            return running ? 0 : 100;
+        }
+        return (recovered.get() + expired.get() + completed.get() + failed.get()) * 100 / total;
+    }
+}
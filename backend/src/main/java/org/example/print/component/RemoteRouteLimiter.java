@@ -0,0 +1,197 @@
+package org.example.print.component;
+
+import org.example.print.config.RemoteHttpProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 远程请求按主机限流和统计
+ * 每个主机(协议+主机+端口)最多同时进行maxPerRoute个请求，超出的请求等待acquireTimeout后失败，
+ * 服务器变慢时不会无限占用调用线程。名额在响应关闭（响应体读完）时才归还，与连接实际占用的时间一致；
+ * 同时统计各主机的请求数、失败数、超时数和耗时
+ */
+@Component
+public class RemoteRouteLimiter implements ClientHttpRequestInterceptor {
+
+    private final RemoteHttpProperties properties;
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    public RemoteRouteLimiter(RemoteHttpProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        Route route = routes.computeIfAbsent(routeKey(request.getURI()), key -> new Route(properties.getMaxPerRoute()));
+
+        route.waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = route.permits.tryAcquire(properties.getAcquireTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("等待远程请求名额被中断: " + request.getURI());
+        } finally {
+            route.waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            route.rejected.incrementAndGet();
+            throw new ResourceAccessException("远程服务器请求过多，等待" + properties.getAcquireTimeout()
+                    + "ms后仍无空闲名额: " + request.getURI());
+        }
+
+        long start = System.nanoTime();
+        route.inFlight.incrementAndGet();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            // 读取状态码时才真正等待响应
+            if (response.getRawStatusCode() >= 500) {
+                route.failures.incrementAndGet();
+            }
+            // 响应体读完、连接归还后才释放名额
+            return new LimitedResponse(response, route, start);
+        } catch (SocketTimeoutException e) {
+            route.timeouts.incrementAndGet();
+            route.failures.incrementAndGet();
+            route.release(start);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            route.failures.incrementAndGet();
+            route.release(start);
+            throw e;
+        }
+    }
+
+    /**
+     * 各主机的请求统计
+     */
+    public Map<String, Map<String, Object>> getStatistics() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        routes.forEach((key, route) -> stats.put(key, route.toStatistics()));
+        return stats;
+    }
+
+    private static String routeKey(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    private static class Route {
+        private final Semaphore permits;
+        private final int maxPerRoute;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Route(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+            this.permits = new Semaphore(maxPerRoute, true);
+        }
+
+        // 请求结束：归还名额并记录耗时（含读取响应体）
+        void release(long start) {
+            long nanos = System.nanoTime() - start;
+            inFlight.decrementAndGet();
+            permits.release();
+            requests.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> toStatistics() {
+            long count = requests.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxPerRoute", maxPerRoute);
+            stats.put("inFlight", inFlight.get());
+            stats.put("availablePermits", permits.availablePermits());
+            stats.put("waiting", waiting.get());
+            stats.put("requests", count);
+            stats.put("failures", failures.get());
+            stats.put("timeouts", timeouts.get());
+            stats.put("rejected", rejected.get());
+            stats.put("avgLatencyMs", count == 0 ? 0 : totalNanos.get() / count / 1_000_000);
+            stats.put("maxLatencyMs", maxNanos.get() / 1_000_000);
+            return stats;
+        }
+    }
+
+    /**
+     * 关闭响应时归还名额，重复关闭只归还一次
+     */
+    private static class LimitedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Route route;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        LimitedResponse(ClientHttpResponse delegate, Route route, long start) {
+            this.delegate = delegate;
+            this.route = route;
+            this.start = start;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    route.release(start);
+                }
+            }
+        }
+    }
+}
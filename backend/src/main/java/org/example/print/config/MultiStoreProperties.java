@@ -0,0 +1,46 @@
+package org.example.print.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 多门店配置项
+ * 一个进程为多个门店打印时，stores按门店ID配置，通过同一个推送连接订阅所有门店；
+ * 登录账号所属的门店会自动加入，未配置时只为登录的门店打印
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "print.multi-store")
+public class MultiStoreProperties {
+
+    private Map<String, Store> stores = new LinkedHashMap<>();
+
+    /**
+     * 单个门店的配置
+     */
+    @Data
+    public static class Store {
+        private String printerName;        // 该门店任务使用的打印机，任务自带打印机时以任务为准
+        private int weight = 1;            // 调度权重，轮到该门店时连续取出的任务数
+    }
+
+    /**
+     * 门店任务的打印机，未配置时返回null
+     */
+    public String getPrinterName(String storeId) {
+        Store store = storeId != null ? stores.get(storeId) : null;
+        return store != null ? store.getPrinterName() : null;
+    }
+
+    /**
+     * 门店的调度权重，未配置时为1
+     */
+    public int getWeight(String storeId) {
+        Store store = storeId != null ? stores.get(storeId) : null;
+        return store != null ? Math.max(store.getWeight(), 1) : 1;
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.print.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 打印机能力配置项
+ * defaults对所有ESC/POS打印机生效，printers按打印机名称覆盖，
+ * 名称中含空格等特殊字符时在yml中需要写成 "[GP-C58 Series]"
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "print.profile")
+public class PrinterProfileProperties {
+
+    private Settings defaults = new Settings();
+
+    private Map<String, Settings> printers = new LinkedHashMap<>();
+
+    /**
+     * 单台打印机的配置，未设置的项沿用defaults
+     */
+    @Data
+    public static class Settings {
+        private Integer paperWidth;        // 纸宽(mm)
+        private String charset;            // 文本编码
+        private Boolean escPos;            // 是否为ESC/POS打印机，为空时自动识别
+        private Boolean rasterImages;      // 光栅位图
+        private Boolean nativeQrcode;      // 原生二维码
+        private Boolean nativeBarcode;     // 原生条码
+        private Boolean nvImages;          // NV位图
+        private Boolean cutter;            // 切刀
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.print.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.simulator.VirtualPrintService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.print.PrintServiceLookup;
+
+/**
+ * 模拟打印机配置类
+ * 开启后将模拟打印机注册到PrintServiceLookup，与系统打印机一起参与按名称查找
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "print.simulator", name = "enabled", havingValue = "true")
+@Slf4j
+public class PrinterSimulatorConfig {
+
+    @Bean
+    public VirtualPrintService virtualPrintService(PrinterSimulatorProperties properties) {
+        VirtualPrintService service = new VirtualPrintService(properties);
+        if (PrintServiceLookup.registerService(service)) {
+            log.info("已注册模拟打印机: {}, 速率: {}B/s, 延迟: {}±{}ms, 失败率: {}, 缺纸率: {}, 离线率: {}",
+                    service.getName(), properties.getBytesPerSecond(), properties.getLatencyMs(),
+                    properties.getLatencyJitterMs(), properties.getErrorRate(),
+                    properties.getPaperOutRate(), properties.getOfflineRate());
+        } else {
+            log.warn("模拟打印机已注册过: {}", service.getName());
+        }
+        return service;
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.print.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模拟打印机配置项
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "print.simulator")
+public class PrinterSimulatorProperties {
+
+    private boolean enabled = false;             // 是否注册模拟打印机
+
+    private String name = "Virtual GP-C58";       // 打印机名称，与print.printer-name一致时默认使用
+
+    private long bytesPerSecond = 20000;         // 传输速率(字节/秒)，<=0表示不限速
+
+    private long latencyMs = 200;                // 每个任务的固定延迟(毫秒)
+
+    private long latencyJitterMs = 100;          // 延迟的正态分布标准差(毫秒)
+
+    private double errorRate = 0;                // 任务失败概率
+
+    private double paperOutRate = 0;             // 任务后进入缺纸状态的概率
+
+    private double offlineRate = 0;              // 任务后进入离线状态的概率
+
+    private long recoverAfterMs = 30000;         // 缺纸或离线后自动恢复的时间(毫秒)，<=0表示需手动恢复
+
+    private String recordDir = "";               // 保存每个任务输出字节的目录，为空不保存
+}
@@ -0,0 +1,44 @@
+package org.example.print.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.component.GzipResponseInterceptor;
+import org.example.print.component.RemoteRouteLimiter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * 远程服务器HTTP客户端配置类
+ * 所有访问远程服务器的REST调用共用一个RestTemplate：设置连接和读取超时，避免服务器无响应时卡住打印线程；
+ * 底层HttpURLConnection在响应读完后把连接放回JDK的长连接缓存复用，按主机限制同时进行的请求数；
+ * 开启压缩时响应以gzip传输，大订单列表占用的门店带宽更少
+ */
+@Configuration
+@Slf4j
+public class RemoteHttpConfig {
+
+    @Bean
+    public RestTemplate remoteRestTemplate(RemoteHttpProperties properties, RemoteRouteLimiter routeLimiter,
+                                           GzipResponseInterceptor gzipInterceptor) {
+        // JDK长连接缓存在首次建立HTTP连接时读取该参数，命令行已指定时不覆盖
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(properties.getKeepAliveConnections()));
+        }
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(properties.getConnectTimeout());
+        requestFactory.setReadTimeout(properties.getReadTimeout());
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(routeLimiter);
+        if (properties.isCompression()) {
+            restTemplate.getInterceptors().add(gzipInterceptor);
+        }
+
+        log.info("远程服务器HTTP客户端: 连接超时{}ms, 读取超时{}ms, 每主机并发{}, 长连接{}, 压缩{}",
+                properties.getConnectTimeout(), properties.getReadTimeout(),
+                properties.getMaxPerRoute(), properties.getKeepAliveConnections(), properties.isCompression());
+        return restTemplate;
+    }
+}
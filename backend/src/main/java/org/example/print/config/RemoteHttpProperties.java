@@ -0,0 +1,26 @@
+package org.example.print.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 远程服务器HTTP客户端配置项
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "remote.http")
+public class RemoteHttpProperties {
+
+    private int connectTimeout = 3000;           // 连接超时(毫秒)
+
+    private int readTimeout = 10000;             // 读取超时(毫秒)
+
+    private int maxPerRoute = 8;                 // 每个主机同时进行的请求数上限
+
+    private long acquireTimeout = 2000;          // 等待空闲请求名额的时间(毫秒)，超时后请求失败
+
+    private int keepAliveConnections = 8;        // 每个主机保持的空闲长连接数
+
+    private boolean compression = true;          // 请求服务器以gzip压缩响应
+}
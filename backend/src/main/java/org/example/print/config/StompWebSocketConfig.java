@@ -1,5 +1,6 @@
 package org.example.print.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -16,6 +17,10 @@ import org.springframework.web.socket.config.annotation.WebSocketTransportRegist
 @EnableWebSocketMessageBroker
 public class StompWebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // 客户端发来的单条消息大小上限(字节)，客户端请求时Tomcat会协商permessage-deflate压缩
+    @Value("${print.stomp.message-size-limit:65536}")
+    private int messageSizeLimit;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // 配置消息代理，广播式应用通常以/topic为前缀
@@ -36,7 +41,7 @@ public class StompWebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
-        registration.setMessageSizeLimit(64 * 1024) // 64KB
+        registration.setMessageSizeLimit(messageSizeLimit)
                 .setSendTimeLimit(20 * 1000)    // 20 seconds
                 .setSendBufferSizeLimit(3 * 1024 * 1024); // 3MB
     }
@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
@@ -27,4 +28,31 @@ public class ThreadPoolConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * PDF文档打印线程池
+     * 大文档逐页渲染耗时较长，单独使用一个线程，避免占用小票打印线程；
+     * 等待队列满时提交线程等待空位，不拒绝任务，积压不会被当作打印失败而消耗重试次数
+     */
+    @Bean(name = "pdfPrintExecutor")
+    public Executor pdfPrintExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("pdf-print-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("PDF打印线程池已关闭");
+            }
+            try {
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("等待PDF打印队列空位被中断", e);
+            }
+        });
+        executor.initialize();
+        return executor;
+    }
 }
@@ -3,15 +3,32 @@ package org.example.print.controller;
 import lombok.extern.slf4j.Slf4j;
 import org.example.print.bean.PrintTask;
 import org.example.print.bean.PrintTaskStatus;
+import org.example.print.bean.PrinterProfile;
+import org.example.print.bean.TaskPage;
+import org.example.print.component.GzipResponseInterceptor;
+import org.example.print.component.PendingTaskIndex;
 import org.example.print.component.PrintMetrics;
 import org.example.print.component.PrintQueueManager;
 import org.example.print.component.PrintTaskPersistence;
+import org.example.print.component.PrinterProfileRegistry;
+import org.example.print.component.RemoteRouteLimiter;
+import org.example.print.persistence.ContentCompression;
+import org.example.print.service.PrinterAssetService;
+import org.example.print.service.RemoteDataService;
+import org.example.print.service.TaskStatusOutbox;
 import org.example.print.service.UnifiedPrintService;
+import org.example.print.simulator.VirtualPrintService;
+import org.example.print.simulator.VirtualPrinterState;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.print.PrintService;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,29 +44,88 @@ import java.util.stream.Collectors;
 public class PrintApiController {
 
     private final PrintQueueManager printQueueManager;
+    private final PendingTaskIndex pendingTaskIndex;
     private final PrintTaskPersistence printTaskPersistence;
     private final UnifiedPrintService printService;
     private final PrintMetrics printMetrics;
+    private final PrinterAssetService printerAssetService;
+    private final PrinterProfileRegistry printerProfileRegistry;
+    private final RemoteRouteLimiter remoteRouteLimiter;
+    private final GzipResponseInterceptor gzipResponseInterceptor;
+    private final TaskStatusOutbox taskStatusOutbox;
+    private final RemoteDataService remoteDataService;
+    // 未开启模拟打印机时为null
+    private final VirtualPrintService virtualPrintService;
 
     @Autowired
     public PrintApiController(
             PrintQueueManager printQueueManager,
+            PendingTaskIndex pendingTaskIndex,
             PrintTaskPersistence printTaskPersistence,
             UnifiedPrintService printService,
-            PrintMetrics printMetrics) {
+            PrintMetrics printMetrics,
+            PrinterAssetService printerAssetService,
+            PrinterProfileRegistry printerProfileRegistry,
+            RemoteRouteLimiter remoteRouteLimiter,
+            GzipResponseInterceptor gzipResponseInterceptor,
+            TaskStatusOutbox taskStatusOutbox,
+            RemoteDataService remoteDataService,
+            ObjectProvider<VirtualPrintService> virtualPrintService) {
         this.printQueueManager = printQueueManager;
+        this.pendingTaskIndex = pendingTaskIndex;
         this.printTaskPersistence = printTaskPersistence;
         this.printService = printService;
         this.printMetrics = printMetrics;
+        this.printerAssetService = printerAssetService;
+        this.printerProfileRegistry = printerProfileRegistry;
+        this.remoteRouteLimiter = remoteRouteLimiter;
+        this.gzipResponseInterceptor = gzipResponseInterceptor;
+        this.taskStatusOutbox = taskStatusOutbox;
+        this.remoteDataService = remoteDataService;
+        this.virtualPrintService = virtualPrintService.getIfAvailable();
     }
 
     /**
-     * 获取所有待处理的打印任务
+     * 获取未完成的打印任务，支持按状态和打印机过滤及分页
+     * 总数通过X-Total-Count响应头返回；不传size时返回全部
      */
     @GetMapping("/tasks/pending")
-    public ResponseEntity<List<PrintTask>> getPendingTasks() {
-        List<PrintTask> tasks = printTaskPersistence.loadPendingTasks();
-        return ResponseEntity.ok(tasks);
+    public ResponseEntity<List<PrintTask>> getPendingTasks(
+            @RequestParam(required = false) PrintTaskStatus status,
+            @RequestParam(required = false) String printerName,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "0") int size) {
+        TaskPage result = pendingTaskIndex.query(status, printerName, page, size);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(result.getTotal()))
+                .body(result.getTasks());
+    }
+
+    /**
+     * 获取已归档的日期
+     */
+    @GetMapping("/tasks/archive")
+    public ResponseEntity<List<LocalDate>> getArchivedDays() {
+        return ResponseEntity.ok(printTaskPersistence.getArchivedDays());
+    }
+
+    /**
+     * 分页查询某天的已完成任务，总数通过X-Total-Count响应头返回
+     */
+    @GetMapping("/tasks/archive/{day}")
+    public ResponseEntity<List<PrintTask>> getArchivedTasks(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "0") int size) {
+        try {
+            TaskPage result = printTaskPersistence.queryArchivedTasks(day, page, size);
+            return ResponseEntity.ok()
+                    .header("X-Total-Count", String.valueOf(result.getTotal()))
+                    .body(result.getTasks());
+        } catch (IOException e) {
+            log.error("读取已完成任务归档失败: {}", day, e);
+            return ResponseEntity.internalServerError().build();
+        }
     }
 
     /**
@@ -61,6 +137,7 @@ public class PrintApiController {
         status.put("queueSize", printQueueManager.getQueueSize());
         status.put("successRate", printMetrics.getSuccessRate());
         status.put("printerReady", printService.isPrinterReady(null));
+        status.put("taskCounts", pendingTaskIndex.countByStatus());
         return ResponseEntity.ok(status);
     }
 
@@ -82,6 +159,82 @@ public class PrintApiController {
         return ResponseEntity.ok(printerList);
     }
 
+    /**
+     * 获取已识别的打印机能力
+     */
+    @GetMapping("/printers/profiles")
+    public ResponseEntity<Collection<PrinterProfile>> getPrinterProfiles() {
+        return ResponseEntity.ok(printerProfileRegistry.getProfiles());
+    }
+
+    /**
+     * 清除打印机能力缓存，下次打印时重新识别
+     */
+    @PostMapping("/printers/profiles/refresh")
+    public ResponseEntity<?> refreshPrinterProfiles(@RequestBody(required = false) Map<String, String> params) {
+        String printerName = params != null ? params.get("printerName") : null;
+        printerProfileRegistry.invalidate(printerName);
+
+        Map<String, Object> responseMap = new HashMap<>();
+        responseMap.put("success", true);
+        responseMap.put("message", "打印机能力将在下次打印时重新识别");
+        return ResponseEntity.ok().body(responseMap);
+    }
+
+    /**
+     * 获取各打印机NV位图同步状态
+     */
+    @GetMapping("/printers/assets")
+    public ResponseEntity<Map<String, PrinterAssetService.PrinterAssetState>> getPrinterAssets() {
+        return ResponseEntity.ok(printerAssetService.getPrinterStates());
+    }
+
+    /**
+     * 重新同步打印机NV位图，下次打印时重新写入
+     */
+    @PostMapping("/printers/assets/sync")
+    public ResponseEntity<?> resyncPrinterAssets(@RequestBody(required = false) Map<String, String> params) {
+        String printerName = params != null ? params.get("printerName") : null;
+        printerAssetService.invalidate(printerName);
+
+        Map<String, Object> responseMap = new HashMap<>();
+        responseMap.put("success", true);
+        responseMap.put("message", "将在下次打印时重新写入打印机图片");
+        return ResponseEntity.ok().body(responseMap);
+    }
+
+    /**
+     * 获取模拟打印机状态和统计
+     */
+    @GetMapping("/simulator/status")
+    public ResponseEntity<Map<String, Object>> getSimulatorStatus() {
+        if (virtualPrintService == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(virtualPrintService.getStatistics());
+    }
+
+    /**
+     * 设置模拟打印机状态：IDLE、PAPER_OUT、OFFLINE
+     */
+    @PostMapping("/simulator/state")
+    public ResponseEntity<?> setSimulatorState(@RequestBody Map<String, String> params) {
+        if (virtualPrintService == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> responseMap = new HashMap<>();
+        try {
+            virtualPrintService.setState(VirtualPrinterState.valueOf(params.get("state")));
+            responseMap.put("success", true);
+            responseMap.put("message", "模拟打印机状态已更新");
+            return ResponseEntity.ok().body(responseMap);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            responseMap.put("success", false);
+            responseMap.put("message", "无效的状态: " + params.get("state"));
+            return ResponseEntity.badRequest().body(responseMap);
+        }
+    }
+
     /**
      * 添加打印任务
      */
@@ -118,6 +271,24 @@ public class PrintApiController {
         status.put("queueSize", printQueueManager.getQueueSize());
         status.put("successRate", printMetrics.getSuccessRate());
         status.put("printerReady", printService.isPrinterReady(null));
+        status.put("recovery", printQueueManager.getRecoveryProgress());
+
+        // 任务内容压缩节省的磁盘和内存
+        Map<String, Object> compression = new HashMap<>();
+        compression.put("disk", ContentCompression.getDiskStatistics());
+        compression.put("heap", pendingTaskIndex.getContentStatistics());
+        status.put("contentCompression", compression);
+
+        // 远程服务器请求统计
+        status.put("remoteHttp", remoteRouteLimiter.getStatistics());
+        status.put("remoteHttpCompression", gzipResponseInterceptor.getStatistics());
+        status.put("statusOutbox", taskStatusOutbox.getStatistics());
+        status.put("remoteConnection", remoteDataService.getConnectionStatistics());
+        status.put("remoteIngest", remoteDataService.getIngestStatistics());
+
+        // 各门店的任务统计
+        status.put("subscribedStores", remoteDataService.getSubscribedStores());
+        status.put("stores", printQueueManager.getStoreStatistics());
 
         // 获取当前默认打印机
         PrintService printer = printService.getPrinterByName(null);
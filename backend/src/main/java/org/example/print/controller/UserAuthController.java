@@ -79,6 +79,7 @@ public class UserAuthController {
             // 添加storeId到响应
             String storeId = userAuthService.getCurrentStoreId();
             status.put("storeId", storeId);
+            status.put("storeIds", userAuthService.getCurrentStoreIds());
 
             log.info("返回用户状态 - userId: {}, merchantId: {}, storeId: {}",
                     userAuthService.getCurrentUserId(),
@@ -0,0 +1,195 @@
+package org.example.print.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 任务内容压缩
+ * 使用Deflate最快级别，压缩后格式为 [原始长度(变长)][zlib数据]；
+ * 内容较短或压缩后没有变小时不压缩。同时统计写入磁盘的原始字节数和实际字节数
+ */
+public final class ContentCompression {
+
+    // 小于该字节数的内容不压缩
+    public static final int MIN_SIZE = 512;
+
+    // Deflater和Inflater创建时分配本地内存，每个线程复用一个
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private static final AtomicLong diskRawBytes = new AtomicLong();
+    private static final AtomicLong diskStoredBytes = new AtomicLong();
+
+    private ContentCompression() {
+    }
+
+    /**
+     * 压缩内容
+     *
+     * @return 压缩后的数据，不值得压缩时返回null
+     */
+    public static byte[] compress(String content) {
+        if (content == null || content.length() < MIN_SIZE / 3) {
+            return null;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        return compress(raw, 0, raw.length);
+    }
+
+    /**
+     * 压缩UTF-8编码的内容，直接读取数组中的一段，不复制
+     *
+     * @return 压缩后的数据，不值得压缩时返回null
+     */
+    public static byte[] compress(byte[] raw, int offset, int rawLength) {
+        if (rawLength < MIN_SIZE) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rawLength / 4 + 16);
+        long length = rawLength;
+        while ((length & ~0x7FL) != 0) {
+            out.write((int) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        out.write((int) length);
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(raw, offset, rawLength);
+        deflater.finish();
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+            if (out.size() >= rawLength) {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解压内容
+     */
+    public static String decompress(byte[] packed) {
+        return new String(decompressBytes(packed), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解压为UTF-8编码的字节，不转换为字符串
+     */
+    public static byte[] decompressBytes(byte[] packed) {
+        int[] position = {0};
+        int length = readLength(packed, position);
+        byte[] raw = new byte[length];
+        inflate(packed, position[0], raw);
+        return raw;
+    }
+
+    /**
+     * 解压后是否以指定字节开头，只解压开头的几个字节
+     */
+    public static boolean startsWith(byte[] packed, byte[] prefix) {
+        int[] position = {0};
+        if (readLength(packed, position) < prefix.length) {
+            return false;
+        }
+        byte[] head = new byte[prefix.length];
+        inflate(packed, position[0], head);
+        return Arrays.equals(head, prefix);
+    }
+
+    /**
+     * 以流的方式读取解压后的内容，不一次性解压到内存
+     */
+    public static InputStream openStream(byte[] packed) {
+        int[] position = {0};
+        readLength(packed, position);
+        return new InflaterInputStream(new ByteArrayInputStream(packed, position[0], packed.length - position[0]));
+    }
+
+    // 从packed的offset处解压，填满out为止
+    private static void inflate(byte[] packed, int offset, byte[] out) {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(packed, offset, packed.length - offset);
+        try {
+            int filled = 0;
+            while (filled < out.length) {
+                int n = inflater.inflate(out, filled, out.length - filled);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("压缩内容不完整");
+                }
+                filled += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("压缩内容格式错误", e);
+        }
+    }
+
+    /**
+     * 压缩前的字节数，不解压
+     */
+    public static int rawLength(byte[] packed) {
+        return rawLength(packed, 0);
+    }
+
+    /**
+     * 从数组offset处开始的压缩数据压缩前的字节数，不解压
+     */
+    public static int rawLength(byte[] data, int offset) {
+        return readLength(data, new int[]{offset});
+    }
+
+    /**
+     * 记录一次写入磁盘的内容大小
+     */
+    public static void recordDisk(long rawBytes, long storedBytes) {
+        diskRawBytes.addAndGet(rawBytes);
+        diskStoredBytes.addAndGet(storedBytes);
+    }
+
+    /**
+     * 启动以来写入磁盘的内容统计
+     */
+    public static Map<String, Long> getDiskStatistics() {
+        long raw = diskRawBytes.get();
+        long stored = diskStoredBytes.get();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("rawBytes", raw);
+        stats.put("storedBytes", stored);
+        stats.put("savedBytes", raw - stored);
+        return stats;
+    }
+
+    private static int readLength(byte[] packed, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = packed[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+            if (shift > 28) {
+                throw new IllegalArgumentException("压缩内容长度格式错误");
+            }
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("压缩内容长度格式错误");
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.print.persistence;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 由多个gzip成员连接而成的文件
+ * 逐个成员解压并校验CRC和长度，找出最后一个完整成员的结尾，解压的数据直接丢弃
+ */
+final class GzipMembers {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    // buffer[0]在文件中的位置
+    private long base;
+
+    private GzipMembers(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * 文件开头连续的完整成员的总字节数，等于文件长度时说明没有不完整的数据
+     */
+    static long completeLength(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            GzipMembers members = new GzipMembers(in);
+            long complete = 0;
+            while (members.fill() && members.skipMember()) {
+                complete = members.base + members.position;
+            }
+            return complete;
+        }
+    }
+
+    /**
+     * 跳过一个成员
+     *
+     * @return 成员完整且校验通过
+     */
+    private boolean skipMember() throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            if (!skipHeader()) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            byte[] output = new byte[8192];
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (!fill()) {
+                        return false;
+                    }
+                    inflater.setInput(buffer, position, limit - position);
+                    position = limit;
+                }
+                int n = inflater.inflate(output);
+                if (n == 0 && inflater.needsDictionary()) {
+                    return false;
+                }
+                crc.update(output, 0, n);
+            }
+            // 最后一次输入中未用完的部分属于尾部
+            position = limit - inflater.getRemaining();
+
+            long expectedCrc = readIntLE();
+            long expectedSize = readIntLE();
+            return expectedCrc == crc.getValue() && expectedSize == (inflater.getBytesWritten() & 0xFFFFFFFFL);
+        } catch (EOFException | DataFormatException e) {
+            return false;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private boolean skipHeader() throws IOException {
+        if (readByte() != 0x1F || readByte() != 0x8B || readByte() != 8) {
+            return false;
+        }
+        int flags = readByte();
+        // 修改时间、压缩标志、操作系统
+        skip(6);
+        if ((flags & FEXTRA) != 0) {
+            skip(readByte() | readByte() << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FHCRC) != 0) {
+            skip(2);
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        base += limit;
+        position = 0;
+        limit = Math.max(in.read(buffer), 0);
+        return limit > 0;
+    }
+
+    private int readByte() throws IOException {
+        if (!fill()) {
+            throw new EOFException();
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private long readIntLE() throws IOException {
+        return readByte() | (long) readByte() << 8 | (long) readByte() << 16 | (long) readByte() << 24;
+    }
+
+    private void skip(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readByte();
+        }
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        while (readByte() != 0) {
+            // 跳过文件名或注释
+        }
+    }
+}
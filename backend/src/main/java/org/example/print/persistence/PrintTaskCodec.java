@@ -0,0 +1,319 @@
+package org.example.print.persistence;
+
+import org.example.print.bean.PrintContentType;
+import org.example.print.bean.PrintTask;
+import org.example.print.bean.PrintTaskPriority;
+import org.example.print.bean.PrintTaskStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * 打印任务二进制编码
+ * 格式：[标记][版本] 之后按固定顺序写入各字段，字符串和数字使用变长长度前缀，
+ * 时间按UTC纪元秒加纳秒存储，枚举按序号存储（0表示null，新增枚举值只能追加到末尾）。
+ * 版本2起内容前增加一个字节标明是否压缩，压缩的内容解码后保持压缩状态，打印时再解压；
+ * 版本3在末尾追加所属门店。
+ * 从版本3起新版本只能在末尾追加字段：解码比当前版本新的数据时读取已知字段，忽略末尾多余的字节，
+ * 因此回退到旧版本程序后仍能读取新版本写入的日志。需要改变已有字段布局时必须更换标记字节，
+ * 旧版本程序会把这样的数据当作无法识别的记录
+ */
+public final class PrintTaskCodec {
+
+    // 首字节，JSON内容以'{'开头，可据此区分两种格式
+    private static final byte MARKER = (byte) 0xB1;
+    private static final byte VERSION = 3;
+
+    // 版本2的内容标记
+    private static final int CONTENT_NULL = 0;
+    private static final int CONTENT_PLAIN = 1;
+    private static final int CONTENT_PACKED = 2;
+
+    private static final PrintTaskStatus[] STATUSES = PrintTaskStatus.values();
+    private static final PrintTaskPriority[] PRIORITIES = PrintTaskPriority.values();
+    private static final PrintContentType[] CONTENT_TYPES = PrintContentType.values();
+
+    private PrintTaskCodec() {
+    }
+
+    /**
+     * 是否为二进制编码的数据
+     */
+    public static boolean isBinary(byte[] data) {
+        return data.length > 1 && data[0] == MARKER;
+    }
+
+    public static byte[] encode(PrintTask task) {
+        Writer out = new Writer(estimateSize(task));
+        out.writeByte(MARKER);
+        out.writeByte(VERSION);
+        out.writeString(task.getTaskId());
+        writeContent(out, task);
+        out.writeEnum(task.getStatus());
+        out.writeVarLong(task.getRetryCount());
+        out.writeTime(task.getCreateTime());
+        out.writeString(task.getPrinterName());
+        out.writeEnum(task.getPriority());
+        out.writeEnum(task.getContentType());
+        out.writeString(task.getStoreId());
+        return out.toByteArray();
+    }
+
+    public static PrintTask decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("不是二进制编码的任务数据");
+        }
+        Reader in = new Reader(data);
+        in.position = 1;
+        int version = in.readByte();
+        if (version < 1) {
+            throw new IllegalArgumentException("不支持的任务编码版本: " + version);
+        }
+
+        PrintTask task = new PrintTask();
+        task.setTaskId(in.readString());
+        if (version == 1) {
+            task.setContent(in.readString());
+        } else {
+            readContent(in, task);
+        }
+        task.setStatus(in.readEnum(STATUSES));
+        task.setRetryCount((int) in.readVarLong());
+        task.setCreateTime(in.readTime());
+        task.setPrinterName(in.readString());
+        task.setPriority(in.readEnum(PRIORITIES));
+        task.setContentType(in.readEnum(CONTENT_TYPES));
+        if (version >= 3) {
+            task.setStoreId(in.readString());
+        }
+        return task;
+    }
+
+    /**
+     * 只读取任务ID，不解码内容
+     */
+    public static String readTaskId(byte[] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("不是二进制编码的任务数据");
+        }
+        Reader in = new Reader(data);
+        in.position = 2;
+        return in.readString();
+    }
+
+    /**
+     * 统计一条写入磁盘的编码数据中内容的原始字节数和实际字节数，不解压内容
+     * 只在数据真正写入日志时调用，内存中的编码和快照重写不计入
+     */
+    public static void recordDisk(byte[] data) {
+        if (!isBinary(data)) {
+            return;
+        }
+        Reader in = new Reader(data);
+        in.position = 1;
+        int version = in.readByte();
+        in.skipString();
+        int flag = version == 1 ? CONTENT_PLAIN : in.readByte();
+        if (flag == CONTENT_PLAIN) {
+            int start = in.position;
+            in.skipString();
+            ContentCompression.recordDisk(in.position - start, in.position - start);
+        } else if (flag == CONTENT_PACKED) {
+            int length = (int) in.readVarLong();
+            ContentCompression.recordDisk(ContentCompression.rawLength(data, in.position), length);
+        }
+    }
+
+    // 内容较长时压缩，已经压缩的内容直接写入
+    private static void writeContent(Writer out, PrintTask task) {
+        byte[] packed = task.packedContent();
+        if (packed == null) {
+            String content = task.getContent();
+            if (content == null) {
+                out.writeByte(CONTENT_NULL);
+                return;
+            }
+            packed = ContentCompression.compress(content);
+            if (packed == null) {
+                out.writeByte(CONTENT_PLAIN);
+                out.writeString(content);
+                return;
+            }
+        }
+        out.writeByte(CONTENT_PACKED);
+        out.writeBytes(packed);
+    }
+
+    private static void readContent(Reader in, PrintTask task) {
+        int flag = in.readByte();
+        if (flag == CONTENT_PLAIN) {
+            task.setContent(in.readString());
+        } else if (flag == CONTENT_PACKED) {
+            task.usePackedContent(in.readBytes());
+        } else if (flag != CONTENT_NULL) {
+            throw new IllegalArgumentException("未知的内容标记: " + flag);
+        }
+    }
+
+    private static int estimateSize(PrintTask task) {
+        // 中文按UTF-8每字符3字节估算，避免扩容
+        int size = 32;
+        if (task.getTaskId() != null) {
+            size += task.getTaskId().length();
+        }
+        if (task.packedContent() != null) {
+            size += task.packedContent().length;
+        } else if (task.getContent() != null) {
+            size += task.getContent().length() * 3;
+        }
+        if (task.getPrinterName() != null) {
+            size += task.getPrinterName().length() * 3;
+        }
+        if (task.getStoreId() != null) {
+            size += task.getStoreId().length() * 3;
+        }
+        return size;
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        // 长度加1存储，0表示null
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeBytes(byte[] value) {
+            writeVarLong(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+        }
+
+        void writeEnum(Enum<?> value) {
+            writeVarLong(value == null ? 0 : value.ordinal() + 1);
+        }
+
+        void writeTime(LocalDateTime value) {
+            if (value == null) {
+                writeByte(0);
+                return;
+            }
+            writeByte(1);
+            writeVarLong(value.toEpochSecond(ZoneOffset.UTC));
+            writeVarLong(value.getNano());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            return buffer[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    throw new IllegalArgumentException("变长整数格式错误");
+                }
+            }
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            String value = new String(buffer, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+
+        void skipString() {
+            int length = (int) readVarLong();
+            if (length > 0) {
+                position += length - 1;
+            }
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarLong();
+            byte[] value = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return value;
+        }
+
+        <E extends Enum<E>> E readEnum(E[] values) {
+            int ordinal = (int) readVarLong();
+            if (ordinal == 0) {
+                return null;
+            }
+            if (ordinal > values.length) {
+                throw new IllegalArgumentException("未知的枚举序号: " + ordinal);
+            }
+            return values[ordinal - 1];
+        }
+
+        LocalDateTime readTime() {
+            if (readByte() == 0) {
+                return null;
+            }
+            long seconds = readVarLong();
+            int nanos = (int) readVarLong();
+            return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        }
+    }
+}
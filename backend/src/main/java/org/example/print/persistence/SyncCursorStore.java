@@ -0,0 +1,72 @@
+package org.example.print.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * 任务同步游标
+ * 按同步范围(门店或商户)保存服务器返回的游标和ETag，下次同步只请求之后的变化；
+ * 写入临时文件后原子替换，进程退出时不会留下半个文件
+ */
+@Slf4j
+public class SyncCursorStore {
+
+    private final File file;
+    private final Properties properties = new Properties();
+
+    public SyncCursorStore(File file) {
+        this.file = file;
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                log.warn("读取同步游标失败，从头同步: {}", file.getAbsolutePath(), e);
+                properties.clear();
+            }
+        }
+    }
+
+    public synchronized String getCursor(String scope) {
+        return properties.getProperty(scope + ".cursor");
+    }
+
+    public synchronized String getEtag(String scope) {
+        return properties.getProperty(scope + ".etag");
+    }
+
+    /**
+     * 更新游标和ETag并落盘，为null的值会被清除
+     */
+    public synchronized void update(String scope, String cursor, String etag) {
+        boolean changed = set(scope + ".cursor", cursor);
+        changed |= set(scope + ".etag", etag);
+        if (!changed) {
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "print task sync cursor");
+                out.getChannel().force(false);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("保存同步游标失败: {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    private boolean set(String key, String value) {
+        String old = value == null ? (String) properties.remove(key) : (String) properties.setProperty(key, value);
+        return value == null ? old != null : !value.equals(old);
+    }
+}
@@ -0,0 +1,249 @@
+package org.example.print.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.bean.PrintTask;
+import org.example.print.bean.TaskPage;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * 已完成任务归档
+ * 按任务创建日期分段，每天一个gzip压缩的JSON Lines文件（yyyy-MM-dd.jsonl.gz），压缩日志时批量追加，
+ * 每次追加写入一个独立的gzip成员，读取时连续解压；之前未压缩的yyyy-MM-dd.jsonl仍可读取。
+ * 过期清理按天删除整个文件，按天查询只读取当天的文件
+ */
+@Slf4j
+public class TaskArchive {
+
+    private static final String SUFFIX = ".jsonl";
+    private static final String GZIP_SUFFIX = ".jsonl.gz";
+
+    private final File dir;
+    private final ObjectMapper objectMapper;
+    // 已确认只包含完整gzip成员的文件及其长度
+    private final Map<String, Long> completeLengths = new HashMap<>();
+
+    public TaskArchive(File dir, ObjectMapper objectMapper) {
+        this.dir = dir;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 按创建日期追加任务，每个日期的文件写完后刷盘
+     */
+    public synchronized void append(List<PrintTask> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, List<PrintTask>> byDay = new TreeMap<>();
+        for (PrintTask task : tasks) {
+            LocalDate day = task.getCreateTime() != null ? task.getCreateTime().toLocalDate() : LocalDate.now();
+            byDay.computeIfAbsent(day, key -> new ArrayList<>()).add(task);
+        }
+
+        dir.mkdirs();
+        for (Map.Entry<LocalDate, List<PrintTask>> entry : byDay.entrySet()) {
+            File file = gzipFile(entry.getKey());
+            truncateTornTail(file);
+            long before = file.length();
+            long raw = 0;
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+                for (PrintTask task : entry.getValue()) {
+                    byte[] line = objectMapper.writeValueAsBytes(task);
+                    gzip.write(line);
+                    gzip.write('\n');
+                    raw += line.length + 1;
+                }
+                gzip.finish();
+                out.getChannel().force(false);
+            }
+            completeLengths.put(file.getName(), file.length());
+            ContentCompression.recordDisk(raw, file.length() - before);
+        }
+    }
+
+    /**
+     * 上次追加时进程退出会在文件末尾留下不完整的gzip成员，新成员接在后面就无法再读到，
+     * 追加前截断到最后一个完整成员的结尾。本进程追加过的文件记住完整长度，不再重复检查
+     */
+    private void truncateTornTail(File file) throws IOException {
+        long length = file.length();
+        Long known = completeLengths.get(file.getName());
+        if (length == 0 || (known != null && known == length)) {
+            return;
+        }
+        long complete = GzipMembers.completeLength(file);
+        if (complete < length) {
+            log.warn("归档文件末尾有不完整的数据，截断{}字节: {}", length - complete, file.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.getChannel().truncate(complete);
+                raf.getChannel().force(false);
+            }
+        }
+        completeLengths.put(file.getName(), complete);
+    }
+
+    /**
+     * 已归档的日期，按日期倒序
+     */
+    public List<LocalDate> listDays() {
+        List<LocalDate> days = new ArrayList<>();
+        String[] names = dir.list();
+        if (names == null) {
+            return days;
+        }
+        for (String name : names) {
+            LocalDate day = parseDay(name);
+            if (day != null && !days.contains(day)) {
+                days.add(day);
+            }
+        }
+        days.sort(Collections.reverseOrder());
+        return days;
+    }
+
+    /**
+     * 分页读取某天的归档任务
+     *
+     * @param page 页码，从0开始
+     * @param size 每页数量，小于等于0时返回全部
+     */
+    public TaskPage query(LocalDate day, int page, int size) throws IOException {
+        long offset = size > 0 ? (long) Math.max(page, 0) * size : 0;
+        int limit = size > 0 ? size : Integer.MAX_VALUE;
+        List<PrintTask> tasks = new ArrayList<>();
+        int total = 0;
+
+        // 未压缩的旧文件在前
+        File plain = plainFile(day);
+        if (plain.exists()) {
+            try (InputStream in = new FileInputStream(plain)) {
+                total = readLines(in, offset, limit, tasks, total);
+            }
+        }
+        File gzip = gzipFile(day);
+        if (gzip.exists()) {
+            try (InputStream in = new TornTailInputStream(new GZIPInputStream(new FileInputStream(gzip), 8192), gzip)) {
+                total = readLines(in, offset, limit, tasks, total);
+            }
+        }
+        return new TaskPage(tasks, total);
+    }
+
+    // 逐行读取，只解析当前页的行，返回累计行数
+    private int readLines(InputStream in, long offset, int limit, List<PrintTask> tasks, int total) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (total >= offset && tasks.size() < limit) {
+                try {
+                    tasks.add(objectMapper.readValue(line, PrintTask.class));
+                } catch (JsonProcessingException e) {
+                    // 不完整的最后一行
+                    log.warn("归档记录无法解析，已忽略: {}", e.getOriginalMessage());
+                    continue;
+                }
+            }
+            total++;
+        }
+        return total;
+    }
+
+    /**
+     * 删除早于指定日期的归档文件
+     *
+     * @return 删除的天数
+     */
+    public synchronized int dropBefore(LocalDate cutoff) {
+        int dropped = 0;
+        for (LocalDate day : listDays()) {
+            if (day.isBefore(cutoff)) {
+                plainFile(day).delete();
+                gzipFile(day).delete();
+                completeLengths.remove(gzipFile(day).getName());
+                log.info("清理已完成任务归档: {}", day);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private File plainFile(LocalDate day) {
+        return new File(dir, day + SUFFIX);
+    }
+
+    private File gzipFile(LocalDate day) {
+        return new File(dir, day + GZIP_SUFFIX);
+    }
+
+    private static LocalDate parseDay(String name) {
+        if (!(name.endsWith(SUFFIX) && name.length() == 10 + SUFFIX.length())
+                && !(name.endsWith(GZIP_SUFFIX) && name.length() == 10 + GZIP_SUFFIX.length())) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(0, 10));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 追加时进程退出会留下不完整或损坏的gzip成员，读到这里时按文件结束处理，之前的成员照常读取
+     */
+    private static class TornTailInputStream extends FilterInputStream {
+        private final File file;
+
+        TornTailInputStream(InputStream in, File file) {
+            super(in);
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (EOFException | ZipException e) {
+                log.warn("归档文件以不完整的数据结尾: {}", file.getName());
+                return -1;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (EOFException | ZipException e) {
+                log.warn("归档文件以不完整的数据结尾: {}", file.getName());
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package org.example.print.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 分段追加写日志
+ * 每条记录为 [长度][CRC32][类型][内容]，只追加不修改，当前段超过大小后切换到新段。
+ * 多个线程同时写入时由第一个等待刷盘的线程统一fsync（组提交），其余线程直接返回。
+ * 压缩时把截止某段的状态写成快照，删除快照之前的段；重放时从最新快照开始读取后续各段
+ */
+@Slf4j
+public class TaskJournal {
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("segment_(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_PATTERN = Pattern.compile("snapshot_(\\d+)\\.log");
+
+    // 记录头：长度(4) + CRC32(4) + 类型(1)
+    private static final int HEADER_SIZE = 9;
+
+    // 单条记录的最大长度，超出视为损坏
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final File dir;
+    private final long segmentSize;
+    private final boolean fsync;
+
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private long segmentId;
+    // 累计写入和已刷盘的字节数，跨段单调递增
+    private long written;
+    private volatile long synced;
+
+    /**
+     * 日志记录处理
+     */
+    public interface RecordHandler {
+        void handle(byte type, byte[] payload);
+    }
+
+    public TaskJournal(File dir, long segmentSize, boolean fsync) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+    }
+
+    /**
+     * 从最新快照和后续各段重放记录，完成后打开一个新段用于写入
+     */
+    public void open(RecordHandler handler) throws IOException {
+        dir.mkdirs();
+
+        long snapshotId = latestId(SNAPSHOT_PATTERN);
+        if (snapshotId > 0) {
+            replayFile(new File(dir, snapshotName(snapshotId)), handler);
+        }
+
+        long lastId = snapshotId;
+        for (long id : listIds(SEGMENT_PATTERN)) {
+            if (id > snapshotId) {
+                replayFile(new File(dir, segmentName(id)), handler);
+            }
+            lastId = Math.max(lastId, id);
+        }
+
+        synchronized (writeLock) {
+            // 已有的段可能以不完整的记录结尾，不再追加
+            openSegment(lastId + 1);
+        }
+    }
+
+    /**
+     * 追加一条记录，不等待刷盘
+     *
+     * @return 写入后的累计位置，用于sync
+     */
+    public long append(byte type, byte[] payload) throws IOException {
+        ByteBuffer buffer = encode(type, payload);
+        synchronized (writeLock) {
+            if (!channel.isOpen()) {
+                // 上次写入失败后未能切换到新段
+                openSegment(segmentId + 1);
+            }
+            long start = channel.size();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                discardTornRecord(start);
+                throw e;
+            }
+            written += HEADER_SIZE + payload.length;
+            long position = written;
+            if (channel.size() >= segmentSize) {
+                roll();
+            }
+            return position;
+        }
+    }
+
+    /**
+     * 等待指定位置之前的记录刷盘
+     * 同一时间只有一个线程执行fsync，一次刷盘覆盖期间所有已写入的记录
+     */
+    public void sync(long position) throws IOException {
+        if (!fsync || synced >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            FileChannel current;
+            long target;
+            synchronized (writeLock) {
+                current = channel;
+                target = written;
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // 期间已切换到新段，旧段在关闭前已刷盘
+            }
+            synced = Math.max(synced, target);
+        }
+    }
+
+    /**
+     * 关闭当前段并切换到新段
+     *
+     * @return 已封闭的最后一个段编号，快照应覆盖到该段
+     */
+    public long roll() throws IOException {
+        synchronized (writeLock) {
+            long sealedId = segmentId;
+            channel.force(false);
+            channel.close();
+            synced = Math.max(synced, written);
+            openSegment(segmentId + 1);
+            return sealedId;
+        }
+    }
+
+    /**
+     * 写入截止指定段的快照，并删除被快照覆盖的段和旧快照
+     */
+    public void writeSnapshot(long upToSegmentId, List<Record> records) throws IOException {
+        File tmp = new File(dir, snapshotName(upToSegmentId) + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Record record : records) {
+                ByteBuffer buffer = encode(record.getType(), record.getPayload());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(false);
+        }
+        Files.move(tmp.toPath(), new File(dir, snapshotName(upToSegmentId)).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (long id : listIds(SEGMENT_PATTERN)) {
+            if (id <= upToSegmentId) {
+                Files.deleteIfExists(new File(dir, segmentName(id)).toPath());
+            }
+        }
+        for (long id : listIds(SNAPSHOT_PATTERN)) {
+            if (id < upToSegmentId) {
+                Files.deleteIfExists(new File(dir, snapshotName(id)).toPath());
+            }
+        }
+    }
+
+    /**
+     * 累计写入的字节数
+     */
+    public long getWrittenBytes() {
+        synchronized (writeLock) {
+            return written;
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 写入失败时段末尾可能留下不完整的记录，重放读到这里就会停止，之后追加的记录都读不到。
+     * 截断到写入前的位置，截断失败时切换到新段
+     */
+    private void discardTornRecord(long start) {
+        try {
+            channel.truncate(start);
+            return;
+        } catch (IOException e) {
+            log.warn("截断写入失败的日志记录失败，切换到新段: {}", segmentName(segmentId), e);
+        }
+        try {
+            channel.close();
+            openSegment(segmentId + 1);
+        } catch (IOException e) {
+            // 下次追加时再打开新段
+            log.error("切换日志段失败", e);
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        segmentId = id;
+        channel = openChannel(new File(dir, segmentName(id)));
+    }
+
+    // 测试时替换为会写入失败的通道
+    FileChannel openChannel(File file) throws IOException {
+        return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static ByteBuffer encode(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 顺序读取文件中的记录，遇到不完整或校验失败的记录时停止
+     */
+    private static void replayFile(File file, RecordHandler handler) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    log.warn("日志记录长度异常，停止读取: {}, 已读取: {}", file.getName(), count);
+                    break;
+                }
+                int expectedCrc;
+                byte type;
+                byte[] payload = new byte[length];
+                try {
+                    expectedCrc = in.readInt();
+                    type = in.readByte();
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    log.warn("日志以不完整的记录结尾: {}, 已读取: {}", file.getName(), count);
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    log.warn("日志记录校验失败，停止读取: {}, 已读取: {}", file.getName(), count);
+                    break;
+                }
+
+                handler.handle(type, payload);
+                count++;
+            }
+        }
+        log.info("已重放日志: {}, 记录数: {}", file.getName(), count);
+    }
+
+    private long latestId(Pattern pattern) {
+        List<Long> ids = listIds(pattern);
+        return ids.isEmpty() ? 0 : ids.get(ids.size() - 1);
+    }
+
+    private List<Long> listIds(Pattern pattern) {
+        List<Long> ids = new ArrayList<>();
+        String[] names = dir.list();
+        if (names == null) {
+            return ids;
+        }
+        for (String name : names) {
+            Matcher matcher = pattern.matcher(name);
+            if (matcher.matches()) {
+                ids.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private static String segmentName(long id) {
+        return String.format("segment_%010d.log", id);
+    }
+
+    private static String snapshotName(long id) {
+        return String.format("snapshot_%010d.log", id);
+    }
+
+    /**
+     * 快照中的一条记录
+     */
+    public static class Record {
+        private final byte type;
+        private final byte[] payload;
+
+        public Record(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.example.print.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.bean.PrintTaskStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 内存映射的任务状态表
+ * 每个任务占用一个64字节的固定槽位，状态、重试次数和更新时间直接在映射内存中原地修改，
+ * 一次状态变化只写十几个字节；进程崩溃后页缓存中的数据仍会写回文件，启动时扫描槽位即可恢复。
+ *
+ * 槽位布局：[0]占用标记 [1]状态 [4-7]重试次数 [8-15]更新时间 [16]任务ID长度 [17-63]任务ID
+ */
+@Slf4j
+public class TaskStateTable {
+
+    private static final int MAGIC = 0x50545354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int SLOT_SIZE = 64;
+    private static final int OFFSET_FLAG = 0;
+    private static final int OFFSET_STATUS = 1;
+    private static final int OFFSET_RETRY = 4;
+    private static final int OFFSET_UPDATE_TIME = 8;
+    private static final int OFFSET_ID_LENGTH = 16;
+    private static final int OFFSET_ID = 17;
+    private static final int MAX_ID_BYTES = SLOT_SIZE - OFFSET_ID;
+
+    private static final PrintTaskStatus[] STATUSES = PrintTaskStatus.values();
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final BitSet used;
+
+    private TaskStateTable(MappedByteBuffer buffer, int capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.used = new BitSet(capacity);
+    }
+
+    /**
+     * 打开状态表，文件中已有的槽位数大于配置时沿用文件中的槽位数
+     */
+    public static TaskStateTable open(File file, int slotCount) throws IOException {
+        file.getParentFile().mkdirs();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            int capacity = slotCount;
+            boolean valid = false;
+            if (raf.length() >= HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                if (header.getInt() == MAGIC && header.getInt() == VERSION) {
+                    capacity = Math.max(slotCount, header.getInt());
+                    valid = true;
+                } else {
+                    log.warn("任务状态表格式不匹配，重新初始化: {}", file.getAbsolutePath());
+                }
+            }
+
+            long size = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+            if (!valid) {
+                raf.setLength(0);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, capacity);
+
+            TaskStateTable table = new TaskStateTable(buffer, capacity);
+            table.scan();
+            return table;
+        }
+    }
+
+    /**
+     * 读取任务状态
+     *
+     * @return 不存在时返回null
+     */
+    public synchronized State get(String taskId) {
+        Integer slot = slots.get(taskId);
+        if (slot == null) {
+            return null;
+        }
+        int base = offset(slot);
+        return new State(STATUSES[buffer.get(base + OFFSET_STATUS)],
+                buffer.getInt(base + OFFSET_RETRY),
+                buffer.getLong(base + OFFSET_UPDATE_TIME));
+    }
+
+    /**
+     * 写入任务状态，新任务分配槽位
+     *
+     * @return 槽位已满或任务ID过长时返回false
+     */
+    public synchronized boolean put(String taskId, PrintTaskStatus status, int retryCount) {
+        Integer slot = slots.get(taskId);
+        if (slot != null) {
+            int base = offset(slot);
+            buffer.put(base + OFFSET_STATUS, (byte) status.ordinal());
+            buffer.putInt(base + OFFSET_RETRY, retryCount);
+            buffer.putLong(base + OFFSET_UPDATE_TIME, System.currentTimeMillis());
+            return true;
+        }
+
+        byte[] id = taskId.getBytes(StandardCharsets.UTF_8);
+        int free = used.nextClearBit(0);
+        if (id.length > MAX_ID_BYTES || free >= capacity) {
+            return false;
+        }
+
+        int base = offset(free);
+        buffer.put(base + OFFSET_STATUS, (byte) status.ordinal());
+        buffer.putInt(base + OFFSET_RETRY, retryCount);
+        buffer.putLong(base + OFFSET_UPDATE_TIME, System.currentTimeMillis());
+        buffer.put(base + OFFSET_ID_LENGTH, (byte) id.length);
+        for (int i = 0; i < id.length; i++) {
+            buffer.put(base + OFFSET_ID + i, id[i]);
+        }
+        // 最后写占用标记，中途崩溃时槽位仍为空闲
+        buffer.put(base + OFFSET_FLAG, (byte) 1);
+
+        used.set(free);
+        slots.put(taskId, free);
+        return true;
+    }
+
+    /**
+     * 释放任务占用的槽位
+     */
+    public synchronized void remove(String taskId) {
+        Integer slot = slots.remove(taskId);
+        if (slot != null) {
+            buffer.put(offset(slot) + OFFSET_FLAG, (byte) 0);
+            used.clear(slot);
+        }
+    }
+
+    /**
+     * 释放不在指定集合中的槽位，用于清理崩溃前未及时释放的记录
+     *
+     * @return 释放的槽位数
+     */
+    public synchronized int retain(Set<String> taskIds) {
+        int removed = 0;
+        Iterator<Map.Entry<String, Integer>> iterator = slots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Integer> entry = iterator.next();
+            if (!taskIds.contains(entry.getKey())) {
+                buffer.put(offset(entry.getValue()) + OFFSET_FLAG, (byte) 0);
+                used.clear(entry.getValue());
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 将映射内存刷入磁盘
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void scan() {
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = offset(slot);
+            if (buffer.get(base + OFFSET_FLAG) != 1) {
+                continue;
+            }
+            int length = buffer.get(base + OFFSET_ID_LENGTH) & 0xFF;
+            int status = buffer.get(base + OFFSET_STATUS);
+            if (length == 0 || length > MAX_ID_BYTES || status < 0 || status >= STATUSES.length) {
+                buffer.put(base + OFFSET_FLAG, (byte) 0);
+                continue;
+            }
+            byte[] id = new byte[length];
+            for (int i = 0; i < length; i++) {
+                id[i] = buffer.get(base + OFFSET_ID + i);
+            }
+            slots.put(new String(id, StandardCharsets.UTF_8), slot);
+            used.set(slot);
+        }
+        log.info("已加载任务状态表: {}/{}", slots.size(), capacity);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * 槽位中的任务状态
+     */
+    public static class State {
+        private final PrintTaskStatus status;
+        private final int retryCount;
+        private final long updateTime;
+
+        State(PrintTaskStatus status, int retryCount, long updateTime) {
+            this.status = status;
+            this.retryCount = retryCount;
+            this.updateTime = updateTime;
+        }
+
+        public PrintTaskStatus getStatus() {
+            return status;
+        }
+
+        public int getRetryCount() {
+            return retryCount;
+        }
+
+        public long getUpdateTime() {
+            return updateTime;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.print.render;
+
+/**
+ * CODE128（B字符集）编码
+ * 仅用于生成光栅条码，打印机支持时优先使用原生GS k指令
+ */
+final class Code128 {
+
+    // 各码值的条/空宽度，最后一个为终止符
+    private static final String[] PATTERNS = {
+            "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+            "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132",
+            "221231", "213212", "223112", "312131", "311222", "321122", "321221", "312212", "322112", "322211",
+            "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+            "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331",
+            "231131", "213113", "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111",
+            "314111", "221411", "431111", "111224", "111422", "121124", "121421", "141122", "141221", "112214",
+            "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+            "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141",
+            "214121", "412121", "111143", "111341", "131141", "114113", "114311", "411113", "411311", "113141",
+            "114131", "311141", "411131", "211412", "211214", "211232", "2331112"
+    };
+
+    private static final int START_B = 104;
+    private static final int STOP = 106;
+
+    // 两侧静区模块数
+    private static final int QUIET_ZONE = 10;
+
+    private Code128() {
+    }
+
+    /**
+     * 是否可以用B字符集编码
+     */
+    static boolean isEncodable(String data) {
+        if (data == null || data.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 条码总模块数（含静区）
+     */
+    static int moduleCount(String data) {
+        // 起始符 + 数据 + 校验符 各11个模块，终止符13个模块
+        return (data.length() + 2) * 11 + 13 + QUIET_ZONE * 2;
+    }
+
+    /**
+     * 计算能放进纸宽的最大模块宽度（1-3点），放不下或无法编码时返回0
+     */
+    static int fitModuleWidth(String data, int maxDots) {
+        if (!isEncodable(data)) {
+            return 0;
+        }
+        int modules = moduleCount(data);
+        for (int width = 3; width >= 1; width--) {
+            if (modules * width <= maxDots) {
+                return width;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 编码为模块数组，true表示黑条
+     */
+    static boolean[] encode(String data) {
+        boolean[] modules = new boolean[moduleCount(data)];
+        int position = QUIET_ZONE;
+
+        int checksum = START_B;
+        position = appendPattern(modules, position, START_B);
+        for (int i = 0; i < data.length(); i++) {
+            int value = data.charAt(i) - 32;
+            checksum += value * (i + 1);
+            position = appendPattern(modules, position, value);
+        }
+        position = appendPattern(modules, position, checksum % 103);
+        appendPattern(modules, position, STOP);
+        return modules;
+    }
+
+    private static int appendPattern(boolean[] modules, int position, int value) {
+        String pattern = PATTERNS[value];
+        boolean bar = true;
+        for (int i = 0; i < pattern.length(); i++) {
+            int width = pattern.charAt(i) - '0';
+            for (int w = 0; w < width; w++) {
+                modules[position++] = bar;
+            }
+            bar = !bar;
+        }
+        return position;
+    }
+}
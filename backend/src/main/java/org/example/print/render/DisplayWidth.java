@@ -0,0 +1,69 @@
+package org.example.print.render;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * 字符显示宽度表
+ * 热敏打印机使用GBK编码，双字节字符按全角打印占两列。
+ * 启动时对整个BMP平面预先计算一次宽度，之后查表即可，不再逐字判断编码范围
+ */
+public final class DisplayWidth {
+
+    private static final byte[] WIDTHS = buildTable();
+
+    private DisplayWidth() {
+    }
+
+    private static byte[] buildTable() {
+        byte[] table = new byte[Character.MAX_VALUE + 1];
+        CharsetEncoder gbk = Charset.forName("GBK").newEncoder();
+
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char ch = (char) c;
+            if (c < 0x20 || c == 0x7F) {
+                // 控制字符（包括ESC/POS指令）不占列宽
+                table[c] = 0;
+            } else if (c < 0x80) {
+                table[c] = 1;
+            } else if (Character.isLowSurrogate(ch)) {
+                // 代理对只按高位计一次
+                table[c] = 0;
+            } else if (Character.isHighSurrogate(ch)) {
+                table[c] = 1;
+            } else {
+                // GBK能编码的非ASCII字符均为双字节全角，无法编码的会被替换为单字节'?'
+                table[c] = (byte) (gbk.canEncode(ch) ? 2 : 1);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 单个字符的显示宽度
+     */
+    public static int of(char c) {
+        return WIDTHS[c];
+    }
+
+    /**
+     * 字符串的显示宽度
+     */
+    public static int of(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        return of(text, 0, text.length());
+    }
+
+    /**
+     * 字符串指定区间的显示宽度
+     */
+    public static int of(CharSequence text, int start, int end) {
+        int width = 0;
+        for (int i = start; i < end; i++) {
+            width += WIDTHS[text.charAt(i)];
+        }
+        return width;
+    }
+}
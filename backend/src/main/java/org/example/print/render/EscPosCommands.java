@@ -0,0 +1,301 @@
+package org.example.print.render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ESC/POS 二进制指令
+ * 二维码、条码使用打印机内置指令生成，只需传输几十个字节；
+ * 打印机不支持时再退回到光栅位图（GS v 0）。
+ * 固定图片（logo、小程序码）可预先写入打印机NV存储（FS q），打印时只需发送FS p引用
+ */
+public final class EscPosCommands {
+
+    public static final byte ESC = 0x1B;
+    public static final byte GS = 0x1D;
+    public static final byte FS = 0x1C;
+
+    // 二维码纠错等级
+    public static final byte QR_EC_L = 48;
+    public static final byte QR_EC_M = 49;
+    public static final byte QR_EC_Q = 50;
+    public static final byte QR_EC_H = 51;
+
+    // 二维码存储区最大数据长度（GP系列打印机）
+    private static final int QR_MAX_DATA = 700;
+
+    // 光栅二维码四周静区模块数
+    private static final int QR_QUIET_ZONE = 4;
+
+    // 条码高度（点）
+    private static final int BARCODE_HEIGHT = 64;
+
+    // 白色像素的灰度阈值
+    private static final int LUMINANCE_THRESHOLD = 128;
+
+    private EscPosCommands() {
+    }
+
+    /**
+     * 居中对齐
+     */
+    public static byte[] alignCenter() {
+        return new byte[]{ESC, 'a', 1};
+    }
+
+    /**
+     * 左对齐
+     */
+    public static byte[] alignLeft() {
+        return new byte[]{ESC, 'a', 0};
+    }
+
+    /**
+     * 走纸到切刀位置并半切 GS V 66 n
+     */
+    public static byte[] feedAndCut() {
+        return new byte[]{GS, 'V', 66, 0};
+    }
+
+    /**
+     * 原生二维码指令 GS ( k
+     *
+     * @param data       二维码内容，按UTF-8存储
+     * @param moduleSize 模块点数，1-16
+     * @param ecLevel    纠错等级
+     * @return 指令字节，数据过长时返回null
+     */
+    public static byte[] qrCode(String data, int moduleSize, byte ecLevel) {
+        byte[] payload = data.getBytes(StandardCharsets.UTF_8);
+        if (payload.length == 0 || payload.length > QR_MAX_DATA) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 32);
+        // 选择模型2
+        out.write(new byte[]{GS, '(', 'k', 4, 0, 49, 65, 50, 0}, 0, 9);
+        // 模块大小
+        out.write(new byte[]{GS, '(', 'k', 3, 0, 49, 67, (byte) moduleSize}, 0, 8);
+        // 纠错等级
+        out.write(new byte[]{GS, '(', 'k', 3, 0, 49, 69, ecLevel}, 0, 8);
+        // 存储数据
+        int length = payload.length + 3;
+        out.write(new byte[]{GS, '(', 'k', (byte) (length & 0xFF), (byte) (length >> 8), 49, 80, 48}, 0, 8);
+        out.write(payload, 0, payload.length);
+        // 打印存储区中的二维码
+        out.write(new byte[]{GS, '(', 'k', 3, 0, 49, 81, 48}, 0, 8);
+        return out.toByteArray();
+    }
+
+    /**
+     * 二维码的光栅位图，用于不支持GS ( k指令的打印机，四周留4个模块的静区
+     *
+     * @param moduleSize 期望的模块点数，超出纸宽时缩小，最小2点
+     * @param maxDots    可打印宽度（点数）
+     * @return 指令字节，内容过长或缩小后仍放不下时返回null
+     */
+    public static byte[] qrCodeRaster(String data, int moduleSize, int maxDots) {
+        boolean[][] modules = QrCode.encode(data);
+        if (modules == null) {
+            return null;
+        }
+        int count = modules.length + QR_QUIET_ZONE * 2;
+        int scale = Math.min(moduleSize, maxDots / count);
+        if (scale < 2) {
+            return null;
+        }
+
+        int widthDots = count * scale;
+        int bytesPerRow = (widthDots + 7) / 8;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + bytesPerRow * widthDots);
+        writeRasterHeader(out, bytesPerRow, widthDots);
+        byte[] row = new byte[bytesPerRow];
+        for (int my = 0; my < count; my++) {
+            Arrays.fill(row, (byte) 0);
+            int y = my - QR_QUIET_ZONE;
+            if (y >= 0 && y < modules.length) {
+                for (int x = 0; x < modules.length; x++) {
+                    if (modules[y][x]) {
+                        for (int d = 0; d < scale; d++) {
+                            int dot = (x + QR_QUIET_ZONE) * scale + d;
+                            row[dot >> 3] |= (byte) (0x80 >> (dot & 7));
+                        }
+                    }
+                }
+            }
+            for (int d = 0; d < scale; d++) {
+                out.write(row, 0, bytesPerRow);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 原生CODE128条码指令 GS k，条码下方打印可读字符
+     *
+     * @param data     条码内容，只支持可打印ASCII字符
+     * @param maxDots  可打印宽度（点数）
+     * @return 指令字节，内容不支持或超出纸宽时返回null
+     */
+    public static byte[] code128(String data, int maxDots) {
+        int moduleWidth = Code128.fitModuleWidth(data, maxDots);
+        if (moduleWidth == 0) {
+            return null;
+        }
+
+        // CODE B字符集中 '{' 需要转义为 "{{"
+        StringBuilder encoded = new StringBuilder(data.length() + 2).append("{B");
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            encoded.append(c);
+            if (c == '{') {
+                encoded.append('{');
+            }
+        }
+        if (encoded.length() > 255) {
+            return null;
+        }
+
+        byte[] payload = encoded.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 16);
+        out.write(new byte[]{GS, 'H', 2}, 0, 3);                     // 可读字符在条码下方
+        out.write(new byte[]{GS, 'h', (byte) BARCODE_HEIGHT}, 0, 3); // 条码高度
+        out.write(new byte[]{GS, 'w', (byte) moduleWidth}, 0, 3);    // 模块宽度
+        out.write(new byte[]{GS, 'k', 73, (byte) payload.length}, 0, 4);
+        out.write(payload, 0, payload.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * CODE128条码的光栅位图，用于不支持GS k指令的打印机
+     *
+     * @return 指令字节，内容不支持或超出纸宽时返回null
+     */
+    public static byte[] code128Raster(String data, int maxDots) {
+        int moduleWidth = Code128.fitModuleWidth(data, maxDots);
+        if (moduleWidth == 0) {
+            return null;
+        }
+
+        boolean[] modules = Code128.encode(data);
+        int widthDots = modules.length * moduleWidth;
+        int bytesPerRow = (widthDots + 7) / 8;
+
+        byte[] row = new byte[bytesPerRow];
+        for (int i = 0; i < modules.length; i++) {
+            if (modules[i]) {
+                for (int d = 0; d < moduleWidth; d++) {
+                    int x = i * moduleWidth + d;
+                    row[x >> 3] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + bytesPerRow * BARCODE_HEIGHT);
+        writeRasterHeader(out, bytesPerRow, BARCODE_HEIGHT);
+        for (int y = 0; y < BARCODE_HEIGHT; y++) {
+            out.write(row, 0, bytesPerRow);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 图片的光栅位图指令 GS v 0，超出纸宽时按比例缩小
+     */
+    public static byte[] rasterImage(BufferedImage image, int maxDots) {
+        BufferedImage source = scaleToWidth(image, maxDots);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int bytesPerRow = (width + 7) / 8;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + bytesPerRow * height);
+        writeRasterHeader(out, bytesPerRow, height);
+        byte[] row = new byte[bytesPerRow];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(row, (byte) 0);
+            for (int x = 0; x < width; x++) {
+                if (isDark(source.getRGB(x, y))) {
+                    row[x >> 3] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+            out.write(row, 0, bytesPerRow);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 定义NV位图指令 FS q，一次写入全部图片，打印机中原有的NV位图会被清除
+     * 图片编号按列表顺序从1开始
+     */
+    public static byte[] defineNvImages(List<BufferedImage> images, int maxDots) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{FS, 'q', (byte) images.size()}, 0, 3);
+        for (BufferedImage image : images) {
+            BufferedImage source = scaleToWidth(image, maxDots);
+            // 宽高均以8点为单位
+            int xUnits = (source.getWidth() + 7) / 8;
+            int yUnits = (source.getHeight() + 7) / 8;
+            out.write(new byte[]{
+                    (byte) (xUnits & 0xFF), (byte) (xUnits >> 8),
+                    (byte) (yUnits & 0xFF), (byte) (yUnits >> 8)}, 0, 4);
+
+            // 按列排列，每个字节表示纵向8个点，高位在上
+            for (int x = 0; x < xUnits * 8; x++) {
+                for (int yByte = 0; yByte < yUnits; yByte++) {
+                    int value = 0;
+                    for (int bit = 0; bit < 8; bit++) {
+                        int y = yByte * 8 + bit;
+                        if (x < source.getWidth() && y < source.getHeight() && isDark(source.getRGB(x, y))) {
+                            value |= 0x80 >> bit;
+                        }
+                    }
+                    out.write(value);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 打印NV位图指令 FS p
+     *
+     * @param number 图片编号，从1开始
+     */
+    public static byte[] printNvImage(int number) {
+        return new byte[]{FS, 'p', (byte) number, 0};
+    }
+
+    static boolean isDark(int argb) {
+        int alpha = (argb >>> 24) & 0xFF;
+        if (alpha < 128) {
+            // 透明像素按白色处理
+            return false;
+        }
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (r * 299 + g * 587 + b * 114) / 1000 < LUMINANCE_THRESHOLD;
+    }
+
+    private static BufferedImage scaleToWidth(BufferedImage image, int maxDots) {
+        if (image.getWidth() <= maxDots) {
+            return image;
+        }
+        int height = image.getHeight() * maxDots / image.getWidth();
+        BufferedImage scaled = new BufferedImage(maxDots, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = scaled.createGraphics();
+        g.drawImage(image, 0, 0, maxDots, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static void writeRasterHeader(ByteArrayOutputStream out, int bytesPerRow, int height) {
+        out.write(new byte[]{GS, 'v', '0', 0,
+                (byte) (bytesPerRow & 0xFF), (byte) (bytesPerRow >> 8),
+                (byte) (height & 0xFF), (byte) (height >> 8)}, 0, 8);
+    }
+}
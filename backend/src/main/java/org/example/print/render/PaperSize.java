@@ -0,0 +1,47 @@
+package org.example.print.render;
+
+/**
+ * 热敏纸规格
+ * 列数按标准字体（12x24）计算，中文字符占两列
+ */
+public enum PaperSize {
+    MM_58(58, 32, 384, new int[]{12, 4, 6, 6}),
+    MM_80(80, 48, 576, new int[]{22, 6, 9, 8});
+
+    private final int millimeters;
+    private final int columns;
+    // 可打印宽度（点数，203dpi）
+    private final int printableDots;
+    // 商品表格各列宽度："商品", "数量", "单价", "小计"
+    private final int[] tableColumns;
+
+    PaperSize(int millimeters, int columns, int printableDots, int[] tableColumns) {
+        this.millimeters = millimeters;
+        this.columns = columns;
+        this.printableDots = printableDots;
+        this.tableColumns = tableColumns;
+    }
+
+    public int getMillimeters() {
+        return millimeters;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getPrintableDots() {
+        return printableDots;
+    }
+
+    int tableColumn(int index) {
+        return tableColumns[index];
+    }
+
+    /**
+     * 根据纸宽毫米数获取规格，无法识别时按58mm处理
+     */
+    public static PaperSize fromMillimeters(int millimeters) {
+        return millimeters >= 80 ? MM_80 : MM_58;
+    }
+}
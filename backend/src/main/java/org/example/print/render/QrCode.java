@@ -0,0 +1,469 @@
+package org.example.print.render;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 二维码编码（字节模式，纠错等级M，版本1-10）
+ * 仅用于生成光栅二维码，打印机支持时优先使用原生GS ( k指令。
+ * 小票上的二维码只是链接，版本10（213字节）已足够，更长的内容不生成
+ */
+final class QrCode {
+
+    private static final int MAX_VERSION = 10;
+
+    // 纠错等级M：每块纠错码字数、第一组块数、第一组每块数据码字数、第二组块数（每块多一个数据码字）
+    private static final int[][] EC_BLOCKS_M = {
+            {},
+            {10, 1, 16, 0},
+            {16, 1, 28, 0},
+            {26, 1, 44, 0},
+            {18, 2, 32, 0},
+            {24, 2, 43, 0},
+            {16, 4, 27, 0},
+            {18, 4, 31, 0},
+            {22, 2, 38, 2},
+            {22, 3, 36, 2},
+            {26, 4, 43, 1}
+    };
+
+    // 校正图形中心坐标
+    private static final int[][] ALIGNMENT_POSITIONS = {
+            {}, {}, {6, 18}, {6, 22}, {6, 26}, {6, 30}, {6, 34},
+            {6, 22, 38}, {6, 24, 42}, {6, 26, 46}, {6, 28, 50}
+    };
+
+    // 纠错等级M的格式信息编码为00
+    private static final int EC_FORMAT_BITS_M = 0;
+
+    private final int version;
+    private final int size;
+    // [y][x]，true为深色
+    private final boolean[][] modules;
+    private final boolean[][] isFunction;
+
+    private QrCode(int version) {
+        this.version = version;
+        this.size = version * 4 + 17;
+        this.modules = new boolean[size][size];
+        this.isFunction = new boolean[size][size];
+    }
+
+    /**
+     * 编码为模块矩阵（不含静区），内容超出版本10容量时返回null
+     */
+    static boolean[][] encode(String data) {
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        byte[] payload = data.getBytes(StandardCharsets.UTF_8);
+        int version = fitVersion(payload.length);
+        if (version == 0) {
+            return null;
+        }
+
+        QrCode qr = new QrCode(version);
+        qr.drawFunctionPatterns();
+        qr.drawCodewords(qr.addEccAndInterleave(qr.encodeData(payload)));
+        qr.applyBestMask();
+        return qr.modules;
+    }
+
+    private static int fitVersion(int length) {
+        for (int version = 1; version <= MAX_VERSION; version++) {
+            // 模式指示4位 + 长度 + 数据
+            int bits = 4 + charCountBits(version) + length * 8;
+            if (bits <= dataCodewords(version) * 8) {
+                return version;
+            }
+        }
+        return 0;
+    }
+
+    private static int charCountBits(int version) {
+        return version < 10 ? 8 : 16;
+    }
+
+    private static int dataCodewords(int version) {
+        int[] blocks = EC_BLOCKS_M[version];
+        return blocks[1] * blocks[2] + blocks[3] * (blocks[2] + 1);
+    }
+
+    // ---------- 功能图形 ----------
+
+    private void drawFunctionPatterns() {
+        // 定位图形之间的时序图形
+        for (int i = 0; i < size; i++) {
+            setFunction(6, i, i % 2 == 0);
+            setFunction(i, 6, i % 2 == 0);
+        }
+
+        drawFinderPattern(3, 3);
+        drawFinderPattern(size - 4, 3);
+        drawFinderPattern(3, size - 4);
+
+        int[] positions = ALIGNMENT_POSITIONS[version];
+        int last = positions.length - 1;
+        for (int i = 0; i < positions.length; i++) {
+            for (int j = 0; j < positions.length; j++) {
+                // 与定位图形重叠的三个角不画
+                if ((i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0)) {
+                    continue;
+                }
+                drawAlignmentPattern(positions[i], positions[j]);
+            }
+        }
+
+        // 先占住格式信息的位置，选定掩码后再写入
+        drawFormatBits(0);
+        drawVersion();
+    }
+
+    private void drawFinderPattern(int x, int y) {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int xx = x + dx;
+                int yy = y + dy;
+                if (xx >= 0 && xx < size && yy >= 0 && yy < size) {
+                    int dist = Math.max(Math.abs(dx), Math.abs(dy));
+                    setFunction(xx, yy, dist != 2 && dist != 4);
+                }
+            }
+        }
+    }
+
+    private void drawAlignmentPattern(int x, int y) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                setFunction(x + dx, y + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+            }
+        }
+    }
+
+    private void drawFormatBits(int mask) {
+        int data = EC_FORMAT_BITS_M << 3 | mask;
+        int rem = data;
+        for (int i = 0; i < 10; i++) {
+            rem = (rem << 1) ^ ((rem >>> 9) * 0x537);
+        }
+        int bits = (data << 10 | rem) ^ 0x5412;
+
+        // 左上角
+        for (int i = 0; i <= 5; i++) {
+            setFunction(8, i, bit(bits, i));
+        }
+        setFunction(8, 7, bit(bits, 6));
+        setFunction(8, 8, bit(bits, 7));
+        setFunction(7, 8, bit(bits, 8));
+        for (int i = 9; i < 15; i++) {
+            setFunction(14 - i, 8, bit(bits, i));
+        }
+
+        // 右上角和左下角
+        for (int i = 0; i < 8; i++) {
+            setFunction(size - 1 - i, 8, bit(bits, i));
+        }
+        for (int i = 8; i < 15; i++) {
+            setFunction(8, size - 15 + i, bit(bits, i));
+        }
+        // 固定的深色模块
+        setFunction(8, size - 8, true);
+    }
+
+    private void drawVersion() {
+        if (version < 7) {
+            return;
+        }
+        int rem = version;
+        for (int i = 0; i < 12; i++) {
+            rem = (rem << 1) ^ ((rem >>> 11) * 0x1F25);
+        }
+        int bits = version << 12 | rem;
+        for (int i = 0; i < 18; i++) {
+            boolean dark = bit(bits, i);
+            int a = size - 11 + i % 3;
+            int b = i / 3;
+            setFunction(a, b, dark);
+            setFunction(b, a, dark);
+        }
+    }
+
+    private void setFunction(int x, int y, boolean dark) {
+        modules[y][x] = dark;
+        isFunction[y][x] = true;
+    }
+
+    // ---------- 数据和纠错 ----------
+
+    private byte[] encodeData(byte[] payload) {
+        int capacity = dataCodewords(version);
+        byte[] result = new byte[capacity];
+        BitWriter writer = new BitWriter(result);
+        writer.write(0x4, 4);
+        writer.write(payload.length, charCountBits(version));
+        for (byte b : payload) {
+            writer.write(b & 0xFF, 8);
+        }
+        // 终止符最多4位，再补齐到整字节
+        writer.write(0, Math.min(4, capacity * 8 - writer.length));
+        writer.write(0, (8 - writer.length % 8) % 8);
+        // 剩余码字交替填充0xEC、0x11
+        for (int i = writer.length / 8, pad = 0xEC; i < capacity; i++, pad ^= 0xEC ^ 0x11) {
+            result[i] = (byte) pad;
+        }
+        return result;
+    }
+
+    private byte[] addEccAndInterleave(byte[] data) {
+        int[] blocks = EC_BLOCKS_M[version];
+        int eccLength = blocks[0];
+        int blockCount = blocks[1] + blocks[3];
+        int shortLength = blocks[2];
+        byte[] divisor = reedSolomonDivisor(eccLength);
+
+        byte[][] dataBlocks = new byte[blockCount][];
+        byte[][] eccBlocks = new byte[blockCount][];
+        for (int i = 0, offset = 0; i < blockCount; i++) {
+            int length = i < blocks[1] ? shortLength : shortLength + 1;
+            dataBlocks[i] = Arrays.copyOfRange(data, offset, offset + length);
+            eccBlocks[i] = reedSolomonRemainder(dataBlocks[i], divisor);
+            offset += length;
+        }
+
+        byte[] result = new byte[data.length + eccLength * blockCount];
+        int k = 0;
+        for (int i = 0; i <= shortLength; i++) {
+            for (byte[] block : dataBlocks) {
+                if (i < block.length) {
+                    result[k++] = block[i];
+                }
+            }
+        }
+        for (int i = 0; i < eccLength; i++) {
+            for (byte[] block : eccBlocks) {
+                result[k++] = block[i];
+            }
+        }
+        return result;
+    }
+
+    private static byte[] reedSolomonDivisor(int degree) {
+        byte[] result = new byte[degree];
+        result[degree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < degree; i++) {
+            for (int j = 0; j < degree; j++) {
+                result[j] = (byte) gfMultiply(result[j] & 0xFF, root);
+                if (j + 1 < degree) {
+                    result[j] ^= result[j + 1];
+                }
+            }
+            root = gfMultiply(root, 0x02);
+        }
+        return result;
+    }
+
+    private static byte[] reedSolomonRemainder(byte[] data, byte[] divisor) {
+        byte[] result = new byte[divisor.length];
+        for (byte b : data) {
+            int factor = (b ^ result[0]) & 0xFF;
+            System.arraycopy(result, 1, result, 0, result.length - 1);
+            result[result.length - 1] = 0;
+            for (int i = 0; i < result.length; i++) {
+                result[i] ^= (byte) gfMultiply(divisor[i] & 0xFF, factor);
+            }
+        }
+        return result;
+    }
+
+    // GF(256)乘法，本原多项式 x^8+x^4+x^3+x^2+1
+    private static int gfMultiply(int x, int y) {
+        int z = 0;
+        for (int i = 7; i >= 0; i--) {
+            z = (z << 1) ^ ((z >>> 7) * 0x11D);
+            z ^= ((y >>> i) & 1) * x;
+        }
+        return z;
+    }
+
+    // 从右下角开始按两列一组上下往返填充
+    private void drawCodewords(byte[] codewords) {
+        int i = 0;
+        int total = codewords.length * 8;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                // 跳过竖直时序图形
+                right = 5;
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vert = 0; vert < size; vert++) {
+                int y = upward ? size - 1 - vert : vert;
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    if (!isFunction[y][x] && i < total) {
+                        modules[y][x] = bit(codewords[i >>> 3], 7 - (i & 7));
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+    // ---------- 掩码 ----------
+
+    private void applyBestMask() {
+        int best = 0;
+        int minPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            applyMask(mask);
+            drawFormatBits(mask);
+            int penalty = penaltyScore();
+            if (penalty < minPenalty) {
+                best = mask;
+                minPenalty = penalty;
+            }
+            // 掩码是异或，再执行一次即还原
+            applyMask(mask);
+        }
+        applyMask(best);
+        drawFormatBits(best);
+    }
+
+    private void applyMask(int mask) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (!isFunction[y][x] && maskBit(mask, x, y)) {
+                    modules[y][x] = !modules[y][x];
+                }
+            }
+        }
+    }
+
+    private static boolean maskBit(int mask, int x, int y) {
+        switch (mask) {
+            case 0:
+                return (x + y) % 2 == 0;
+            case 1:
+                return y % 2 == 0;
+            case 2:
+                return x % 3 == 0;
+            case 3:
+                return (x + y) % 3 == 0;
+            case 4:
+                return (x / 3 + y / 2) % 2 == 0;
+            case 5:
+                return x * y % 2 + x * y % 3 == 0;
+            case 6:
+                return (x * y % 2 + x * y % 3) % 2 == 0;
+            default:
+                return ((x + y) % 2 + x * y % 3) % 2 == 0;
+        }
+    }
+
+    private int penaltyScore() {
+        int result = 0;
+
+        // 规则1：行列中连续5个以上同色；规则3：类似定位图形的1:1:3:1:1
+        for (int a = 0; a < size; a++) {
+            result += linePenalty(a, true) + linePenalty(a, false);
+        }
+
+        // 规则2：2x2同色块
+        for (int y = 0; y < size - 1; y++) {
+            for (int x = 0; x < size - 1; x++) {
+                boolean color = modules[y][x];
+                if (color == modules[y][x + 1] && color == modules[y + 1][x] && color == modules[y + 1][x + 1]) {
+                    result += 3;
+                }
+            }
+        }
+
+        // 规则4：深色比例偏离50%
+        int dark = 0;
+        for (boolean[] row : modules) {
+            for (boolean module : row) {
+                if (module) {
+                    dark++;
+                }
+            }
+        }
+        int total = size * size;
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        return result + k * 10;
+    }
+
+    private int linePenalty(int index, boolean horizontal) {
+        int result = 0;
+        int run = 0;
+        boolean runColor = false;
+        for (int i = 0; i < size; i++) {
+            boolean color = horizontal ? modules[index][i] : modules[i][index];
+            if (i > 0 && color == runColor) {
+                run++;
+                if (run == 5) {
+                    result += 3;
+                } else if (run > 5) {
+                    result++;
+                }
+            } else {
+                runColor = color;
+                run = 1;
+            }
+
+            // 以i为起点的深浅深深深浅深，且一侧有4个浅色模块（码外视为浅色）
+            if (i + 7 <= size && isFinderLike(index, i, horizontal)
+                    && (isLightRun(index, i - 4, i, horizontal) || isLightRun(index, i + 7, i + 11, horizontal))) {
+                result += 40;
+            }
+        }
+        return result;
+    }
+
+    private boolean isFinderLike(int index, int start, boolean horizontal) {
+        boolean[] pattern = {true, false, true, true, true, false, true};
+        for (int k = 0; k < pattern.length; k++) {
+            if (module(index, start + k, horizontal) != pattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isLightRun(int index, int from, int to, boolean horizontal) {
+        for (int i = from; i < to; i++) {
+            if (module(index, i, horizontal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean module(int index, int i, boolean horizontal) {
+        if (i < 0 || i >= size) {
+            return false;
+        }
+        return horizontal ? modules[index][i] : modules[i][index];
+    }
+
+    private static boolean bit(int value, int i) {
+        return ((value >>> i) & 1) != 0;
+    }
+
+    private static final class BitWriter {
+        private final byte[] buffer;
+        private int length;
+
+        BitWriter(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        void write(int value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    buffer[length >>> 3] |= (byte) (0x80 >>> (length & 7));
+                }
+                length++;
+            }
+        }
+    }
+}
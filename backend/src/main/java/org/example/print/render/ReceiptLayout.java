@@ -0,0 +1,176 @@
+package org.example.print.render;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 小票列排版
+ * 根据纸宽计算分隔线、表格列和自动换行，所有方法直接追加到调用方的StringBuilder中，
+ * 补齐空格使用预先分配的空格数组，排版过程中不产生临时对象
+ */
+public final class ReceiptLayout {
+
+    private static final char[] SPACES = new char[128];
+
+    private static final Map<PaperSize, ReceiptLayout> LAYOUTS = new EnumMap<>(PaperSize.class);
+
+    static {
+        Arrays.fill(SPACES, ' ');
+        for (PaperSize paperSize : PaperSize.values()) {
+            LAYOUTS.put(paperSize, new ReceiptLayout(paperSize));
+        }
+    }
+
+    private final PaperSize paperSize;
+    private final String divider;
+    // 两栏排版时左栏的宽度
+    private final int leftColumnWidth;
+
+    private ReceiptLayout(PaperSize paperSize) {
+        this.paperSize = paperSize;
+        char[] line = new char[paperSize.getColumns() + 1];
+        Arrays.fill(line, '-');
+        line[paperSize.getColumns()] = '\n';
+        this.divider = new String(line);
+        this.leftColumnWidth = paperSize.getColumns() * 5 / 8;
+    }
+
+    /**
+     * 获取指定纸宽的排版实例
+     */
+    public static ReceiptLayout of(PaperSize paperSize) {
+        return LAYOUTS.get(paperSize);
+    }
+
+    public PaperSize getPaperSize() {
+        return paperSize;
+    }
+
+    public int getColumns() {
+        return paperSize.getColumns();
+    }
+
+    /**
+     * 整行分隔线（含换行符）
+     */
+    public String divider() {
+        return divider;
+    }
+
+    /**
+     * 追加四列表格行（不含换行符）
+     * 某列内容超宽时不截断，后续列按绝对位置对齐，尽量消化超出的宽度
+     */
+    public StringBuilder appendTableRow(StringBuilder out, String col1, String col2, String col3, String col4) {
+        int cursor = 0;
+        int target = 0;
+
+        cursor += appendCell(out, col1);
+        target += paperSize.tableColumn(0) + 1;
+        cursor = padTo(out, cursor, target);
+
+        cursor += appendCell(out, col2);
+        target += paperSize.tableColumn(1) + 1;
+        cursor = padTo(out, cursor, target);
+
+        cursor += appendCell(out, col3);
+        target += paperSize.tableColumn(2) + 1;
+        cursor = padTo(out, cursor, target);
+
+        cursor += appendCell(out, col4);
+        padTo(out, cursor, target + paperSize.tableColumn(3));
+        return out;
+    }
+
+    /**
+     * 追加左右两栏（不含换行符），左栏补齐到固定宽度
+     */
+    public StringBuilder appendTwoColumns(StringBuilder out, String left, String right) {
+        int cursor = appendCell(out, left);
+        padTo(out, cursor, leftColumnWidth);
+        appendCell(out, right);
+        return out;
+    }
+
+    /**
+     * 按纸宽自动换行追加文本，每行以换行符结尾
+     * 中文可在任意字符处断行，英文和数字优先在空格处断行
+     */
+    public StringBuilder appendWrapped(StringBuilder out, String text) {
+        if (text == null || text.isEmpty()) {
+            return out.append('\n');
+        }
+
+        int columns = paperSize.getColumns();
+        int length = text.length();
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int width = 0;
+            int lastSpace = -1;
+            int i = lineStart;
+            while (i < length) {
+                char c = text.charAt(i);
+                int charWidth = DisplayWidth.of(c);
+                if (width + charWidth > columns) {
+                    break;
+                }
+                if (c == ' ') {
+                    lastSpace = i;
+                }
+                width += charWidth;
+                i++;
+            }
+
+            int lineEnd = i;
+            int nextStart = i;
+            if (i < length && lastSpace > lineStart && isWordChar(text.charAt(i)) && isWordChar(text.charAt(i - 1))) {
+                // 避免把英文单词拆开
+                lineEnd = lastSpace;
+                nextStart = lastSpace + 1;
+            }
+            while (lineEnd > lineStart + 1 && text.charAt(lineEnd - 1) == ' ') {
+                // 去掉行尾空格
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                // 单个字符就超出纸宽，至少输出一个字符防止死循环
+                lineEnd = lineStart + 1;
+                nextStart = lineEnd;
+            }
+
+            out.append(text, lineStart, lineEnd).append('\n');
+
+            // 跳过行首空格
+            while (nextStart < length && text.charAt(nextStart) == ' ') {
+                nextStart++;
+            }
+            lineStart = nextStart;
+        }
+        return out;
+    }
+
+    private static int appendCell(StringBuilder out, String text) {
+        if (text == null) {
+            return 0;
+        }
+        out.append(text);
+        return DisplayWidth.of(text);
+    }
+
+    private static int padTo(StringBuilder out, int cursor, int target) {
+        int spaces = target - cursor;
+        while (spaces > 0) {
+            int count = Math.min(spaces, SPACES.length);
+            out.append(SPACES, 0, count);
+            spaces -= count;
+            cursor += count;
+        }
+        return cursor;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c < 0x80 && Character.isLetterOrDigit(c);
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.print.render;
+
+import org.example.print.bean.PrinterProfile;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 小票输出
+ * 文本先写入StringBuilder，遇到二维码、条码、图片等二进制元素时再按打印机编码刷入字节流，
+ * 保证文本与二进制指令的顺序一致，整张小票最终作为一个打印文档发送
+ */
+public class ReceiptWriter {
+
+    // 二维码模块点数
+    private static final int QR_MODULE_SIZE = 6;
+
+    private final StringBuilder text = new StringBuilder(2048);
+    private final ByteArrayOutputStream bytes;
+    private final Charset charset;
+    private final ReceiptLayout layout;
+    private final boolean nativeQrCode;
+    private final boolean nativeBarcode;
+    private final boolean rasterImages;
+    private final boolean cutter;
+    // 按key引用的图片指令（NV位图引用或光栅位图）
+    private final Map<String, byte[]> images = new HashMap<>();
+
+    private ReceiptWriter(PrinterProfile profile) {
+        this.layout = ReceiptLayout.of(profile.getPaperSize());
+        this.charset = profile.isEscPos() ? Charset.forName(profile.getCharset()) : null;
+        this.bytes = profile.isEscPos() ? new ByteArrayOutputStream(4096) : null;
+        this.nativeQrCode = profile.isNativeQrCode();
+        this.nativeBarcode = profile.isNativeBarcode();
+        this.rasterImages = profile.isRasterImages();
+        this.cutter = profile.isCutter();
+    }
+
+    /**
+     * 按打印机能力创建输出
+     * ESC/POS打印机输出指令字节；PDF等驱动打印机输出纯文本，二维码和条码以文字形式输出
+     */
+    public static ReceiptWriter forProfile(PrinterProfile profile) {
+        return new ReceiptWriter(profile);
+    }
+
+    public ReceiptLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 当前文本缓冲区
+     */
+    public StringBuilder text() {
+        return text;
+    }
+
+    public boolean isEscPos() {
+        return bytes != null;
+    }
+
+    /**
+     * 居中打印二维码，打印机不支持GS ( k时使用光栅位图；
+     * 非ESC/POS打印机、不支持光栅位图或内容过长时输出二维码内容文字
+     */
+    public ReceiptWriter qrCode(String data) {
+        if (data == null || data.isEmpty()) {
+            return this;
+        }
+        if (!isEscPos()) {
+            text.append(data).append('\n');
+            return this;
+        }
+
+        byte[] command = nativeQrCode ? EscPosCommands.qrCode(data, QR_MODULE_SIZE, EscPosCommands.QR_EC_M) : null;
+        if (command == null && rasterImages) {
+            command = EscPosCommands.qrCodeRaster(data, QR_MODULE_SIZE, layout.getPaperSize().getPrintableDots());
+        }
+        if (command == null) {
+            text.append(data).append('\n');
+            return this;
+        }
+        writeCentered(command);
+        return this;
+    }
+
+    /**
+     * 居中打印CODE128条码，打印机不支持GS k时使用光栅位图
+     */
+    public ReceiptWriter barcode(String data) {
+        if (data == null || data.isEmpty()) {
+            return this;
+        }
+        if (!isEscPos()) {
+            text.append(data).append('\n');
+            return this;
+        }
+
+        int maxDots = layout.getPaperSize().getPrintableDots();
+        byte[] command = nativeBarcode ? EscPosCommands.code128(data, maxDots) : null;
+        if (command != null) {
+            writeCentered(command);
+            return this;
+        }
+
+        command = rasterImages ? EscPosCommands.code128Raster(data, maxDots) : null;
+        if (command == null) {
+            text.append(data).append('\n');
+            return this;
+        }
+        writeCentered(command);
+        // 光栅条码没有可读字符，补一行文字
+        text.append(data).append('\n');
+        return this;
+    }
+
+    /**
+     * 登记可按key引用的图片
+     *
+     * @param command 打印该图片的指令，NV位图为FS p，否则为光栅位图
+     */
+    public ReceiptWriter registerImage(String key, byte[] command) {
+        images.put(key, command);
+        return this;
+    }
+
+    public boolean hasImage(String key) {
+        return isEscPos() && images.containsKey(key);
+    }
+
+    /**
+     * 居中打印已登记的图片，未登记时忽略
+     */
+    public ReceiptWriter image(String key) {
+        if (hasImage(key)) {
+            writeCentered(images.get(key));
+        }
+        return this;
+    }
+
+    /**
+     * 走纸并切纸，打印机没有切刀时忽略
+     */
+    public ReceiptWriter cut() {
+        if (cutter) {
+            raw(EscPosCommands.feedAndCut());
+        }
+        return this;
+    }
+
+    /**
+     * 直接写入二进制指令
+     */
+    public ReceiptWriter raw(byte[] command) {
+        if (command == null || !isEscPos()) {
+            return this;
+        }
+        flushText();
+        bytes.write(command, 0, command.length);
+        return this;
+    }
+
+    /**
+     * 获取ESC/POS字节
+     */
+    public byte[] toByteArray() {
+        flushText();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 获取纯文本内容
+     */
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    private void writeCentered(byte[] command) {
+        raw(EscPosCommands.alignCenter());
+        raw(command);
+        text.append('\n');
+        raw(EscPosCommands.alignLeft());
+    }
+
+    private void flushText() {
+        if (text.length() > 0) {
+            byte[] encoded = text.toString().getBytes(charset);
+            bytes.write(encoded, 0, encoded.length);
+            text.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package org.example.print.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.example.print.bean.PrintContentType;
+import org.example.print.bean.PrintTask;
+import org.example.print.persistence.ContentCompression;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintException;
+import javax.print.PrintService;
+import javax.print.SimpleDoc;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Paper;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PDF文档打印服务
+ * 任务内容为Base64编码的PDF文件，先流式解码到临时文件，再逐页渲染打印，
+ * 渲染结果只保留最近的少量页面，避免大文档整体加载到堆内存中
+ */
+@Service
+@Slf4j
+public class PdfPrintService {
+
+    // "%PDF-" 的Base64编码前缀
+    private static final String PDF_BASE64_PREFIX = "JVBERi0";
+    private static final byte[] PDF_BASE64_PREFIX_BYTES = PDF_BASE64_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    @Value("${app.data.dir:./data}")
+    private String baseDir;
+
+    // 渲染分辨率，热敏打印机一般为203dpi
+    @Value("${print.pdf.dpi:203}")
+    private float dpi;
+
+    // 已渲染页面的缓存数量
+    @Value("${print.pdf.page-cache-size:2}")
+    private int pageCacheSize;
+
+    // PDFBox解析时使用的最大堆内存(MB)，超出部分使用临时文件
+    @Value("${print.pdf.max-main-memory:16}")
+    private long maxMainMemory;
+
+    /**
+     * 判断是否为PDF打印任务
+     */
+    public boolean isPdfTask(PrintTask task) {
+        if (task.getContentType() != null) {
+            return task.getContentType() == PrintContentType.PDF;
+        }
+        // 压缩保存的内容只解压开头几个字节判断
+        byte[] packed = task.packedContent();
+        if (packed != null) {
+            return ContentCompression.startsWith(packed, PDF_BASE64_PREFIX_BYTES);
+        }
+        String content = task.getContent();
+        return content != null && content.startsWith(PDF_BASE64_PREFIX);
+    }
+
+    /**
+     * 打印PDF任务
+     * 该方法会阻塞到打印机接收完所有页面为止，应在专用线程池中调用
+     */
+    public void print(PrintTask task, PrintService printService) throws IOException, PrintException {
+        File spoolFile = spoolToFile(task);
+        try (PDDocument document = PDDocument.load(spoolFile,
+                MemoryUsageSetting.setupMixed(maxMainMemory * 1024 * 1024))) {
+
+            PdfPageable pageable = new PdfPageable(document, dpi, pageCacheSize);
+            log.info("开始打印PDF文档: {}, 页数: {}", task.getTaskId(), pageable.getNumberOfPages());
+
+            DocPrintJob job = printService.createPrintJob();
+            job.print(new SimpleDoc(pageable, DocFlavor.SERVICE_FORMATTED.PAGEABLE, null), null);
+
+            log.info("PDF文档打印完成: {}, 实际渲染次数: {}", task.getTaskId(), pageable.getRenderCount());
+        } finally {
+            if (!spoolFile.delete()) {
+                log.warn("删除PDF临时文件失败: {}", spoolFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * 将Base64内容流式解码到临时文件
+     */
+    private File spoolToFile(PrintTask task) throws IOException {
+        File spoolDir = new File(baseDir, "pdf_spool");
+        if (!spoolDir.exists()) {
+            spoolDir.mkdirs();
+        }
+
+        File spoolFile = new File(spoolDir, task.getTaskId() + ".pdf");
+        // 压缩保存的内容边解压边解码，不先解压成完整的字符串
+        byte[] packed = task.packedContent();
+        InputStream source = packed != null ? ContentCompression.openStream(packed) : new AsciiInputStream(task.getContent());
+        try (InputStream in = Base64.getMimeDecoder().wrap(source);
+             OutputStream out = new FileOutputStream(spoolFile)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return spoolFile;
+    }
+
+    /**
+     * 直接读取字符串中的ASCII字符，避免为Base64内容再复制一份字节数组
+     */
+    private static class AsciiInputStream extends InputStream {
+        private final String source;
+        private int position;
+
+        AsciiInputStream(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return position < source.length() ? source.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= source.length()) {
+                return -1;
+            }
+            int count = Math.min(len, source.length() - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) source.charAt(position++);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 按需渲染的PDF分页
+     * 打印系统可能对同一页多次调用print（如分带打印），渲染结果放入有界LRU缓存
+     */
+    private static class PdfPageable implements Pageable, Printable {
+        private final PDDocument document;
+        private final PDFRenderer renderer;
+        private final float dpi;
+        private final Map<Integer, BufferedImage> pageCache;
+        private int renderCount;
+
+        PdfPageable(PDDocument document, float dpi, int cacheSize) {
+            this.document = document;
+            this.renderer = new PDFRenderer(document);
+            this.dpi = dpi;
+            this.pageCache = new LinkedHashMap<Integer, BufferedImage>(cacheSize + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+
+        @Override
+        public int getNumberOfPages() {
+            return document.getNumberOfPages();
+        }
+
+        @Override
+        public PageFormat getPageFormat(int pageIndex) {
+            PDPage page = document.getPage(pageIndex);
+            PDRectangle box = page.getCropBox();
+            boolean rotated = page.getRotation() % 180 != 0;
+
+            Paper paper = new Paper();
+            double width = rotated ? box.getHeight() : box.getWidth();
+            double height = rotated ? box.getWidth() : box.getHeight();
+            paper.setSize(width, height);
+            paper.setImageableArea(0, 0, width, height);
+
+            PageFormat format = new PageFormat();
+            format.setPaper(paper);
+            return format;
+        }
+
+        @Override
+        public Printable getPrintable(int pageIndex) {
+            return this;
+        }
+
+        @Override
+        public int print(Graphics graphics, PageFormat pageFormat, int pageIndex) throws PrinterException {
+            if (pageIndex >= getNumberOfPages()) {
+                return NO_SUCH_PAGE;
+            }
+
+            BufferedImage image;
+            try {
+                image = renderPage(pageIndex);
+            } catch (IOException e) {
+                throw new PrinterException("渲染PDF第" + (pageIndex + 1) + "页失败: " + e.getMessage());
+            }
+
+            // 等比缩放到可打印区域
+            double scale = Math.min(pageFormat.getImageableWidth() / image.getWidth(),
+                    pageFormat.getImageableHeight() / image.getHeight());
+
+            Graphics2D g2d = (Graphics2D) graphics;
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(image,
+                    (int) pageFormat.getImageableX(),
+                    (int) pageFormat.getImageableY(),
+                    (int) (image.getWidth() * scale),
+                    (int) (image.getHeight() * scale),
+                    null);
+            return PAGE_EXISTS;
+        }
+
+        private BufferedImage renderPage(int pageIndex) throws IOException {
+            BufferedImage image = pageCache.get(pageIndex);
+            if (image == null) {
+                image = renderer.renderImageWithDPI(pageIndex, dpi, ImageType.GRAY);
+                pageCache.put(pageIndex, image);
+                renderCount++;
+            }
+            return image;
+        }
+
+        int getRenderCount() {
+            return renderCount;
+        }
+    }
+}
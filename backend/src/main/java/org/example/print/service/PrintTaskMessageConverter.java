@@ -0,0 +1,125 @@
+package org.example.print.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.example.print.bean.PrintContentType;
+import org.example.print.bean.PrintTaskMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 推送消息解码
+ * 直接从消息字节流式读取字段，不构造通用Map；content为JSON对象或数组时跳过不解析，
+ * 只记录字节位置，打印时才解析一次
+ */
+public class PrintTaskMessageConverter extends AbstractMessageConverter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public PrintTaskMessageConverter() {
+        super(MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PrintTaskMessage.class == clazz;
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, MessageHeaders headers) {
+        // 只用于解码，发送的消息交给后面的转换器
+        return false;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        Object payload = message.getPayload();
+        byte[] frame = payload instanceof byte[] ? (byte[]) payload : payload.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            return decode(frame);
+        } catch (IOException | RuntimeException e) {
+            throw new MessageConversionException(message, "推送消息格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解码一条推送消息
+     */
+    public static PrintTaskMessage decode(byte[] frame) throws IOException {
+        PrintTaskMessage result = new PrintTaskMessage();
+        try (JsonParser parser = JSON_FACTORY.createParser(frame)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("消息不是JSON对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "type":
+                        result.setType(text(parser, token));
+                        break;
+                    case "seq":
+                        result.setSeq(token.isNumeric() ? parser.getLongValue() : null);
+                        break;
+                    case "taskId":
+                        result.setTaskId(text(parser, token));
+                        break;
+                    case "storeId":
+                        result.setStoreId(text(parser, token));
+                        break;
+                    case "printerName":
+                        result.setPrinterName(text(parser, token));
+                        break;
+                    case "contentType":
+                        result.setContentType(contentType(text(parser, token)));
+                        break;
+                    case "content":
+                        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                            int start = (int) parser.getTokenLocation().getByteOffset();
+                            parser.skipChildren();
+                            int end = (int) parser.getCurrentLocation().getByteOffset();
+                            result.setFrame(frame);
+                            result.setContentOffset(start);
+                            result.setContentLength(end - start);
+                        } else {
+                            result.setContentText(text(parser, token));
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static PrintContentType contentType(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return PrintContentType.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
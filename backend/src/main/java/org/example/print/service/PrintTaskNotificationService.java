@@ -4,13 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.print.bean.PrintTask;
 import org.example.print.bean.PrintTaskStatus;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -24,24 +19,12 @@ import java.util.Map;
 @Slf4j
 public class PrintTaskNotificationService {
     private final SimpMessagingTemplate messagingTemplate;
-    private final RestTemplate restTemplate;
-
-    @Value("${remote.server.url:http://localhost:9090}")
-    private String serverUrl;
-
-    @Value("${remote.auth.enabled:false}")
-    private boolean authEnabled;
-
-    @Value("${remote.auth.username:}")
-    private String username;
-
-    @Value("${remote.auth.password:}")
-    private String password;
+    private final TaskStatusOutbox statusOutbox;
 
     @Autowired
-    public PrintTaskNotificationService(SimpMessagingTemplate messagingTemplate) {
+    public PrintTaskNotificationService(SimpMessagingTemplate messagingTemplate, TaskStatusOutbox statusOutbox) {
         this.messagingTemplate = messagingTemplate;
-        this.restTemplate = new RestTemplate();
+        this.statusOutbox = statusOutbox;
     }
 
     /**
@@ -59,31 +42,10 @@ public class PrintTaskNotificationService {
 
     /**
      * 向远程服务器发送状态更新
+     * 记入发件箱后立即返回，由发件箱合并同一任务的状态并批量发送
      */
     public void notifyRemoteServer(String taskId, PrintTaskStatus status) {
-        try {
-            String url = serverUrl + "/api/print-tasks/" + taskId + "/status";
-
-            HttpHeaders headers = new HttpHeaders();
-            if (authEnabled) {
-                String auth = username + ":" + password;
-                headers.set("Authorization", "Basic " +
-                        java.util.Base64.getEncoder().encodeToString(auth.getBytes()));
-            }
-
-            HttpEntity<String> requestEntity = new HttpEntity<>(status.name(), headers);
-
-            restTemplate.exchange(
-                    url,
-                    HttpMethod.PUT,
-                    requestEntity,
-                    Void.class
-            );
-
-            log.debug("已发送任务状态更新到远程服务器: {}", taskId);
-        } catch (Exception e) {
-            log.error("更新服务器任务状态失败: {}, 状态: {}", taskId, status, e);
-        }
+        statusOutbox.enqueue(taskId, status);
     }
 
     /**
@@ -0,0 +1,412 @@
+package org.example.print.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.bean.PrinterProfile;
+import org.example.print.render.EscPosCommands;
+import org.example.print.render.PaperSize;
+import org.example.print.render.ReceiptWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.ImageIO;
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintService;
+import javax.print.SimpleDoc;
+import javax.print.event.PrintJobAdapter;
+import javax.print.event.PrintJobEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 打印机图片资源同步服务
+ * logo、小程序码等固定图片只写入打印机NV存储一次，记录每台打印机持有的版本，
+ * 打印时通过FS p按编号引用；打印机不支持NV位图时使用缓存的光栅位图
+ */
+@Service
+@Slf4j
+public class PrinterAssetService {
+
+    private static final String STATE_FILE = "printer_assets.json";
+
+    // 等待打印机确认NV位图写入的最长时间(毫秒)
+    private static final long SYNC_CONFIRM_TIMEOUT = 10_000;
+    // 写入失败或未确认后，同一台打印机再次尝试的间隔(毫秒)，期间使用光栅位图
+    private static final long SYNC_RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    public static final String ASSET_LOGO = "logo";
+    public static final String ASSET_QRCODE = "qrcode";
+
+    @Value("${app.data.dir:./data}")
+    private String baseDir;
+
+    @Value("${print.qrcode-path:static/qrcode.jpg}")
+    private String qrcodePath;
+
+    @Value("${print.logo-path:}")
+    private String logoPath;
+
+    // 写入NV存储后等待打印机完成闪存写入的时间(毫秒)
+    @Value("${print.nv-upload-delay:3000}")
+    private long uploadDelay;
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+
+    // 已登记的图片：key -> 路径，顺序即NV位图编号
+    private final Map<String, String> assetPaths = new LinkedHashMap<>();
+
+    // 按纸宽缓存的图片数据
+    private final Map<PaperSize, AssetBundle> bundles = new ConcurrentHashMap<>();
+
+    // 每台打印机当前持有的图片版本
+    private final Map<String, PrinterAssetState> printerStates = new ConcurrentHashMap<>();
+
+    // 正在写入NV位图的打印机
+    private final Map<String, CompletableFuture<Boolean>> pendingSyncs = new ConcurrentHashMap<>();
+
+    // 写入失败或未确认的时间
+    private final Map<String, Long> failedSyncs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PrinterAssetService(ResourceLoader resourceLoader, ObjectMapper objectMapper) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (logoPath != null && !logoPath.isEmpty()) {
+            assetPaths.put(ASSET_LOGO, logoPath);
+        }
+        if (qrcodePath != null && !qrcodePath.isEmpty()) {
+            assetPaths.put(ASSET_QRCODE, qrcodePath);
+        }
+        loadStates();
+    }
+
+    /**
+     * 将图片登记到小票输出中
+     * 支持NV位图的打印机在版本不一致时先同步，再以FS p引用；否则使用光栅位图
+     */
+    public void bindImages(ReceiptWriter writer, PrintService printService, PrinterProfile profile) {
+        if (!writer.isEscPos() || !(profile.isNvImages() || profile.isRasterImages())) {
+            return;
+        }
+
+        AssetBundle bundle = getBundle(writer.getLayout().getPaperSize());
+        if (bundle.assets.isEmpty()) {
+            return;
+        }
+
+        boolean synced = profile.isNvImages() && ensureSynced(printService, bundle);
+        if (!synced && !profile.isRasterImages()) {
+            return;
+        }
+        for (int i = 0; i < bundle.assets.size(); i++) {
+            Asset asset = bundle.assets.get(i);
+            writer.registerImage(asset.key, synced ? EscPosCommands.printNvImage(i + 1) : asset.raster);
+        }
+    }
+
+    /**
+     * 清除同步记录，下次打印时重新写入NV存储
+     *
+     * @param printerName 打印机名称，为空时清除全部
+     */
+    public void invalidate(String printerName) {
+        if (printerName == null || printerName.isEmpty()) {
+            printerStates.clear();
+            failedSyncs.clear();
+        } else {
+            printerStates.remove(printerName);
+            failedSyncs.remove(printerName);
+        }
+        saveStates();
+        log.info("已清除打印机图片同步记录: {}", printerName == null ? "全部" : printerName);
+    }
+
+    /**
+     * 获取各打印机的图片同步状态
+     */
+    public Map<String, PrinterAssetState> getPrinterStates() {
+        return Collections.unmodifiableMap(printerStates);
+    }
+
+    /**
+     * 确保打印机中的NV位图与当前图片版本一致
+     * 同一台打印机同时只有一个线程写入，其余线程等待写入结果；写入和等待都不持有锁，不影响其他打印机
+     *
+     * @return 是否可以使用NV位图
+     */
+    private boolean ensureSynced(PrintService printService, AssetBundle bundle) {
+        String printerName = printService.getName();
+        if (isSynced(printerName, bundle)) {
+            return true;
+        }
+        Long failedAt = failedSyncs.get(printerName);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < SYNC_RETRY_INTERVAL) {
+            return false;
+        }
+
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> pending = pendingSyncs.putIfAbsent(printerName, created);
+        if (pending != null) {
+            // 其他线程正在写入，等写入和闪存保存完成后再发送数据
+            return awaitSync(printerName, pending);
+        }
+
+        boolean synced = false;
+        try {
+            synced = isSynced(printerName, bundle) || upload(printService, bundle);
+            return synced;
+        } finally {
+            pendingSyncs.remove(printerName, created);
+            created.complete(synced);
+        }
+    }
+
+    private boolean isSynced(String printerName, AssetBundle bundle) {
+        PrinterAssetState state = printerStates.get(printerName);
+        return state != null && bundle.manifest.equals(state.getManifest());
+    }
+
+    /**
+     * 写入NV位图，打印机确认收到数据后才记录为已同步，未确认时本次使用光栅位图
+     */
+    private boolean upload(PrintService printService, AssetBundle bundle) {
+        String printerName = printService.getName();
+        try {
+            log.info("开始写入打印机NV位图: {}, 图片数: {}, 字节数: {}",
+                    printerName, bundle.assets.size(), bundle.defineCommand.length);
+            UploadListener listener = new UploadListener();
+            DocPrintJob job = printService.createPrintJob();
+            job.addPrintJobListener(listener);
+            job.print(new SimpleDoc(bundle.defineCommand, DocFlavor.BYTE_ARRAY.AUTOSENSE, null), null);
+
+            if (!listener.await(SYNC_CONFIRM_TIMEOUT)) {
+                failedSyncs.put(printerName, System.currentTimeMillis());
+                log.warn("打印机未确认NV位图写入，{}分钟内使用光栅位图: {}",
+                        TimeUnit.MILLISECONDS.toMinutes(SYNC_RETRY_INTERVAL), printerName);
+                return false;
+            }
+
+            // 打印机写入闪存期间不能接收数据
+            Thread.sleep(uploadDelay);
+
+            PrinterAssetState newState = new PrinterAssetState();
+            newState.setManifest(bundle.manifest);
+            newState.setPaperSize(bundle.paperSize);
+            Map<String, String> versions = new LinkedHashMap<>();
+            for (Asset asset : bundle.assets) {
+                versions.put(asset.key, asset.version);
+            }
+            newState.setVersions(versions);
+            newState.setSyncTime(LocalDateTime.now());
+            printerStates.put(printerName, newState);
+            failedSyncs.remove(printerName);
+            saveStates();
+
+            log.info("打印机NV位图同步完成: {}, 版本: {}", printerName, bundle.manifest);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("写入打印机NV位图被中断: {}", printerName, e);
+            return false;
+        } catch (Exception e) {
+            failedSyncs.put(printerName, System.currentTimeMillis());
+            log.error("写入打印机NV位图失败，使用光栅位图: {}", printerName, e);
+            return false;
+        }
+    }
+
+    private boolean awaitSync(String printerName, CompletableFuture<Boolean> pending) {
+        try {
+            return pending.get(SYNC_CONFIRM_TIMEOUT + uploadDelay, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("等待打印机NV位图写入超时，使用光栅位图: {}", printerName);
+            return false;
+        }
+    }
+
+    private AssetBundle getBundle(PaperSize paperSize) {
+        return bundles.computeIfAbsent(paperSize, this::loadBundle);
+    }
+
+    private AssetBundle loadBundle(PaperSize paperSize) {
+        List<Asset> assets = new ArrayList<>();
+        List<BufferedImage> images = new ArrayList<>();
+        int maxDots = paperSize.getPrintableDots();
+
+        for (Map.Entry<String, String> entry : assetPaths.entrySet()) {
+            try {
+                BufferedImage image = readImage(entry.getValue());
+                if (image == null) {
+                    log.warn("图片资源不存在: {} = {}", entry.getKey(), entry.getValue());
+                    continue;
+                }
+                byte[] raster = EscPosCommands.rasterImage(image, maxDots);
+                assets.add(new Asset(entry.getKey(), digest(raster), raster));
+                images.add(image);
+            } catch (IOException e) {
+                log.error("读取图片资源失败: {} = {}", entry.getKey(), entry.getValue(), e);
+            }
+        }
+
+        byte[] defineCommand = EscPosCommands.defineNvImages(images, maxDots);
+        return new AssetBundle(paperSize, assets, defineCommand, digest(defineCommand));
+    }
+
+    private BufferedImage readImage(String path) throws IOException {
+        Resource resource;
+        if (path.startsWith("classpath:")) {
+            resource = resourceLoader.getResource(path);
+        } else {
+            resource = resourceLoader.getResource("file:" + path);
+        }
+        if (!resource.exists()) {
+            return null;
+        }
+        return ImageIO.read(resource.getInputStream());
+    }
+
+    private static String digest(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void loadStates() {
+        File file = new File(baseDir, STATE_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            Map<String, PrinterAssetState> states = objectMapper.readValue(file,
+                    new TypeReference<Map<String, PrinterAssetState>>() {});
+            printerStates.putAll(states);
+            log.info("已加载打印机图片同步记录: {}台", states.size());
+        } catch (IOException e) {
+            log.error("加载打印机图片同步记录失败", e);
+        }
+    }
+
+    private synchronized void saveStates() {
+        try {
+            File dir = new File(baseDir);
+            dir.mkdirs();
+            objectMapper.writeValue(new File(dir, STATE_FILE), printerStates);
+        } catch (IOException e) {
+            log.error("保存打印机图片同步记录失败", e);
+        }
+    }
+
+    /**
+     * 打印机持有的图片版本
+     */
+    @Data
+    public static class PrinterAssetState {
+        private String manifest;                 // 整组图片的版本
+        private PaperSize paperSize;             // 写入时使用的纸宽
+        private Map<String, String> versions;    // 各图片的版本
+        private LocalDateTime syncTime;          // 同步时间
+    }
+
+    /**
+     * 等待打印任务的确认事件，数据发送完成或任务完成视为成功；
+     * 失败、取消或驱动不再发送事件而未确认时视为失败
+     */
+    private static class UploadListener extends PrintJobAdapter {
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        @Override
+        public void printDataTransferCompleted(PrintJobEvent event) {
+            result.complete(true);
+        }
+
+        @Override
+        public void printJobCompleted(PrintJobEvent event) {
+            result.complete(true);
+        }
+
+        @Override
+        public void printJobFailed(PrintJobEvent event) {
+            result.complete(false);
+        }
+
+        @Override
+        public void printJobCanceled(PrintJobEvent event) {
+            result.complete(false);
+        }
+
+        @Override
+        public void printJobNoMoreEvents(PrintJobEvent event) {
+            result.complete(false);
+        }
+
+        boolean await(long timeoutMillis) throws InterruptedException {
+            try {
+                return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class Asset {
+        final String key;
+        final String version;
+        final byte[] raster;
+
+        Asset(String key, String version, byte[] raster) {
+            this.key = key;
+            this.version = version;
+            this.raster = raster;
+        }
+    }
+
+    private static class AssetBundle {
+        final PaperSize paperSize;
+        final List<Asset> assets;
+        final byte[] defineCommand;
+        final String manifest;
+
+        AssetBundle(PaperSize paperSize, List<Asset> assets, byte[] defineCommand, String manifest) {
+            this.paperSize = paperSize;
+            this.assets = assets;
+            this.defineCommand = defineCommand;
+            this.manifest = manifest;
+        }
+    }
+}
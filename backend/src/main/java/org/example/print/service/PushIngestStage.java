@@ -0,0 +1,159 @@
+package org.example.print.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 推送消息接收队列
+ * STOMP接收线程只负责放入有界队列，由单独的线程按顺序处理，磁盘写入和上报不会阻塞连接的心跳；
+ * 积压超过高水位时通知服务器暂停推送，降到低水位后恢复，队列满时拒绝消息，由调用方补同步；
+ * 处理失败的消息交给失败回调，由调用方补同步。创建后调用start才开始处理
+ */
+@Slf4j
+public class PushIngestStage<T> {
+
+    private final BlockingQueue<T> queue;
+    private final int pauseAbove;
+    private final int resumeBelow;
+    private final Consumer<T> handler;
+    // 参数为true表示请求暂停推送，false表示恢复
+    private final Consumer<Boolean> flowListener;
+    // 处理失败的消息
+    private final Consumer<T> failureListener;
+    private final Thread worker;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean paused = new AtomicBoolean(false);
+    private volatile boolean running = true;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pauses = new AtomicLong();
+
+    public PushIngestStage(int capacity, Consumer<T> handler, Consumer<Boolean> flowListener,
+                           Consumer<T> failureListener) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.pauseAbove = Math.max(capacity * 3 / 4, 1);
+        this.resumeBelow = capacity / 4;
+        this.handler = handler;
+        this.flowListener = flowListener;
+        this.failureListener = failureListener;
+        this.worker = new Thread(this::run, "stomp-ingest");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * 启动处理线程，之前放入的消息在启动后处理
+     */
+    public void start() {
+        if (running && started.compareAndSet(false, true)) {
+            worker.start();
+        }
+    }
+
+    /**
+     * 放入一条消息，不阻塞
+     *
+     * @return 队列已满时返回false
+     */
+    public boolean offer(T message) {
+        if (!running || !queue.offer(message)) {
+            rejected.incrementAndGet();
+            signalPause();
+            return false;
+        }
+        accepted.incrementAndGet();
+        if (queue.size() >= pauseAbove) {
+            signalPause();
+        }
+        return true;
+    }
+
+    private void run() {
+        while (running) {
+            T message;
+            try {
+                message = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                handler.accept(message);
+                processed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.error("处理推送消息失败", e);
+                notifyFailure(message);
+            }
+            if (paused.get() && queue.size() <= resumeBelow && paused.compareAndSet(true, false)) {
+                log.info("推送消息积压已降到{}条，通知服务器恢复推送", queue.size());
+                notifyFlow(false);
+            }
+        }
+    }
+
+    private void signalPause() {
+        if (paused.compareAndSet(false, true)) {
+            pauses.incrementAndGet();
+            log.warn("推送消息积压{}条，通知服务器暂停推送", queue.size());
+            notifyFlow(true);
+        }
+    }
+
+    private void notifyFlow(boolean pause) {
+        try {
+            flowListener.accept(pause);
+        } catch (Exception e) {
+            log.warn("发送推送流控消息失败", e);
+        }
+    }
+
+    private void notifyFailure(T message) {
+        try {
+            failureListener.accept(message);
+        } catch (Exception e) {
+            log.warn("处理推送消息失败回调异常", e);
+        }
+    }
+
+    /**
+     * 当前是否请求服务器暂停推送，重新连接后需要重新发送
+     */
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    /**
+     * 停止处理线程，队列中未处理的消息丢弃，服务器未收到接收确认，下次同步时重新获取
+     */
+    public void close() {
+        running = false;
+        worker.interrupt();
+        int dropped = queue.size();
+        queue.clear();
+        if (dropped > 0) {
+            log.info("停止推送消息处理，{}条未处理的消息将在下次同步时重新获取", dropped);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("capacity", queue.size() + queue.remainingCapacity());
+        stats.put("accepted", accepted.get());
+        stats.put("processed", processed.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("pauses", pauses.get());
+        stats.put("paused", paused.get());
+        return stats;
+    }
+}
@@ -1,33 +1,59 @@
 package org.example.print.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.print.bean.PrintContentType;
 import org.example.print.bean.PrintTask;
+import org.example.print.bean.PrintTaskMessage;
 import org.example.print.bean.PrintTaskStatus;
 import org.example.print.component.PrintQueueManager;
+import org.example.print.component.PrintTaskPersistence;
+import org.example.print.config.MultiStoreProperties;
+import org.example.print.persistence.SyncCursorStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.simp.stomp.*;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHttpHeaders;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.sockjs.client.RestTemplateXhrTransport;
 import org.springframework.web.socket.sockjs.client.SockJsClient;
 import org.springframework.web.socket.sockjs.client.Transport;
 import org.springframework.web.socket.sockjs.client.WebSocketTransport;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.websocket.ContainerProvider;
+import javax.websocket.WebSocketContainer;
+import java.io.File;
 import java.lang.reflect.Type;
+import java.net.URLEncoder;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 远程数据服务 (STOMP版本)
@@ -39,6 +65,7 @@ public class RemoteDataService {
 
     private final PrintQueueManager printQueueManager;
     private final PrintTaskNotificationService notificationService;
+    private final PrintTaskPersistence printTaskPersistence;
     private final RestTemplate restTemplate;
     private StompSession stompSession;
     private final AtomicBoolean isConnected = new AtomicBoolean(false);
@@ -62,43 +89,161 @@ public class RemoteDataService {
     @Value("${remote.connection.retry-interval:5000}")
     private long retryInterval;
 
+    // 连续失败时重连间隔按倍数增长，不超过这个上限(毫秒)
+    @Value("${remote.connection.max-retry-interval:60000}")
+    private long maxRetryInterval;
+
+    // 重连间隔的随机浮动比例，避免服务器恢复时各门店同时重连
+    @Value("${remote.connection.retry-jitter:0.2}")
+    private double retryJitter;
+
+    // 一次连接尝试超过这个时间(毫秒)仍未成功或失败时放弃，重新安排重连
+    @Value("${remote.connection.connect-timeout:30000}")
+    private long connectTimeout;
+
+    // 所有重连都在这个线程上执行，同一时间只有一次连接尝试
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stomp-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object reconnectLock = new Object();
+    private ScheduledFuture<?> pendingReconnect;
+    // 连接已发起、尚未成功或失败
+    private final AtomicBoolean connecting = new AtomicBoolean(false);
+    // 每次连接尝试加一，已放弃的连接尝试之后再回调时忽略
+    private final AtomicLong connectGeneration = new AtomicLong();
+    private int consecutiveFailures;
+    private volatile long reconnectAt;
+
+    // 推送消息接收队列容量，超过3/4时通知服务器暂停推送
+    @Value("${remote.ingest.capacity:500}")
+    private int ingestCapacity;
+
+    // 发送暂停/恢复推送消息的目的地
+    @Value("${remote.ingest.flow-destination:/app/print-tasks/flow}")
+    private String flowDestination;
+
+    private PushIngestStage<PrintTaskMessage> ingestStage;
+
+    // 推送连接协商permessage-deflate压缩，服务器不支持时按未压缩传输
+    @Value("${remote.stomp.compression:true}")
+    private boolean stompCompression;
+
+    // 单条推送消息的大小上限(字节)，分成多个WebSocket帧传输的消息在这个范围内重新组装
+    @Value("${remote.stomp.message-size-limit:1048576}")
+    private int stompMessageSizeLimit;
+
+    // 建立WebSocket连接和完成握手的超时(毫秒)
+    @Value("${remote.stomp.handshake-timeout:10000}")
+    private long handshakeTimeout;
+
+    // 连接状态统计
+    private final AtomicLong connectAttempts = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private volatile LocalDateTime lastConnectedTime;
+    private volatile LocalDateTime lastDisconnectedTime;
+    private volatile String lastError;
+
+    @Value("${app.data.dir:./data}")
+    private String baseDir;
+
+    // 批量确认接收的接口
+    @Value("${remote.ack.batch-path:/api/print-tasks/received}")
+    private String ackBatchPath;
+
+    // 服务器不支持批量确认时，间隔多久再尝试(毫秒)
+    @Value("${remote.status.batch-retry-interval:600000}")
+    private long ackBatchRetryInterval;
+
+    // 不支持批量确认时记录的时间，0表示支持
+    private volatile long ackBatchUnsupportedSince;
+
+    // 增量同步的游标，服务器通过响应头返回，下次请求作为since参数
+    private static final String CURSOR_HEADER = "X-Sync-Cursor";
+    private static final String STORE_SCOPE = "store.";
+    private static final String MERCHANT_SCOPE = "merchant.";
+    // Tomcat WebSocket客户端建立连接和握手的超时参数
+    private static final String TOMCAT_IO_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.IO_TIMEOUT_MS";
+    private SyncCursorStore syncCursorStore;
+
+    // 推送断开或发现遗漏时的轮询间隔(毫秒)
+    @Value("${remote.poll.interval:10000}")
+    private long pollInterval;
+
+    // 推送正常且没有遗漏时的轮询间隔(毫秒)
+    @Value("${remote.poll.idle-interval:300000}")
+    private long idlePollInterval;
+
+    // 轮询间隔的随机浮动比例，避免各门店同时请求
+    @Value("${remote.poll.jitter:0.2}")
+    private double pollJitter;
+
+    private final ScheduledExecutorService scheduledExecutor;
+    private ScheduledFuture<?> nextPoll;
+    private final Object pollLock = new Object();
+    // 上次同步获取到了任务，说明推送有遗漏或积压，继续快速轮询直到没有新任务
+    private volatile boolean catchingUp = true;
+    // 各门店推送消息中的最后一个序号，用于发现遗漏
+    private final Map<String, Long> lastPushSeqs = new ConcurrentHashMap<>();
+
 
     // 添加用户信息和商户ID的存储
     private String userId;
     private String merchantId;
     private String storeId;
+    // 登录账号可以打印的其他门店
+    private volatile List<String> storeIds = Collections.emptyList();
+    private final MultiStoreProperties storeProperties;
 
     @Autowired
     public RemoteDataService(
             PrintQueueManager printQueueManager,
-            PrintTaskNotificationService notificationService) {
+            PrintTaskNotificationService notificationService,
+            PrintTaskPersistence printTaskPersistence,
+            RestTemplate remoteRestTemplate,
+            ScheduledExecutorService scheduledExecutor,
+            MultiStoreProperties storeProperties) {
         this.printQueueManager = printQueueManager;
         this.notificationService = notificationService;
-        this.restTemplate = new RestTemplate();
+        this.printTaskPersistence = printTaskPersistence;
+        this.restTemplate = remoteRestTemplate;
+        this.scheduledExecutor = scheduledExecutor;
+        this.storeProperties = storeProperties;
     }
 
     @PostConstruct
     public void initialize() {
+        syncCursorStore = new SyncCursorStore(new File(baseDir, "sync_cursor.properties"));
+        // 处理失败的任务没有保存，由补同步重新获取
+        ingestStage = new PushIngestStage<>(ingestCapacity, this::handlePushMessage, this::sendFlowControl,
+                message -> onPushGap("推送消息处理失败"));
+        ingestStage.start();
 
         // 连接WebSocket
         connectStompClient();
 
-        // 初始同步一次打印任务
+        // 初始同步一次打印任务，之后按推送状态调整轮询间隔
         syncPrintTasks();
+        scheduleNextPoll(nextPollDelay());
     }
 
-    // 获取当前用户ID的辅助方法
-    private Integer getUserId() {
-        return null;
+    @PreDestroy
+    public void destroy() {
+        reconnectExecutor.shutdownNow();
+        disconnectStompClient();
+        ingestStage.close();
     }
 
-
     // 添加设置用户信息的方法
-    public void setUserInfo(String userId, String username, String merchantId, String storeId) {
+    public void setUserInfo(String userId, String username, String merchantId, String storeId, List<String> storeIds) {
         this.userId = userId;
         this.username = username;
         this.merchantId = merchantId;
         this.storeId = storeId;
+        this.storeIds = storeIds != null ? new ArrayList<>(storeIds) : Collections.emptyList();
 
         // 如果已经连接，则重新连接以应用新的店铺信息
         if (isConnected.get()) {
@@ -114,20 +259,40 @@ public class RemoteDataService {
      * 连接STOMP客户端
      */
     private void connectStompClient() {
-        if (isConnected.get()) {
+        if (isConnected.get() || !connecting.compareAndSet(false, true)) {
             return;
         }
+        connectAttempts.incrementAndGet();
+        long generation = connectGeneration.incrementAndGet();
 
         try {
             log.info("正在连接STOMP服务: {}", serverUrl + wsPath);
 
             // 创建WebSocket客户端
-            List<Transport> transports = Collections.singletonList(new WebSocketTransport(new StandardWebSocketClient()));
-            WebSocketClient client = new SockJsClient(transports);
+            // 容器默认只缓冲8KB的完整消息，大订单会被直接断开
+            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+            container.setDefaultMaxTextMessageBufferSize(stompMessageSizeLimit);
+            container.setDefaultMaxBinaryMessageBufferSize(stompMessageSizeLimit);
+            StandardWebSocketClient webSocketClient = new StandardWebSocketClient(container);
+            webSocketClient.setUserProperties(Collections.singletonMap(
+                    TOMCAT_IO_TIMEOUT_PROPERTY, String.valueOf(handshakeTimeout)));
+            List<Transport> transports = Collections.singletonList(new WebSocketTransport(webSocketClient));
+            SockJsClient client = new SockJsClient(transports);
+            // SockJS先请求/info，默认创建的RestTemplate没有超时，改用设置了超时的共用客户端
+            client.setInfoReceiver(new RestTemplateXhrTransport(restTemplate));
 
             // 创建STOMP客户端
             WebSocketStompClient stompClient = new WebSocketStompClient(client);
-            stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+            // 打印任务消息直接解码为PrintTaskMessage，发送的消息仍使用Jackson
+            stompClient.setMessageConverter(new CompositeMessageConverter(Arrays.asList(
+                    new PrintTaskMessageConverter(), new MappingJackson2MessageConverter())));
+            stompClient.setInboundMessageSizeLimit(stompMessageSizeLimit);
+
+            WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
+            if (stompCompression) {
+                handshakeHeaders.setSecWebSocketExtensions(
+                        Collections.singletonList(new WebSocketExtension("permessage-deflate")));
+            }
 
 
             // 添加用户信息到STOMP头
@@ -141,6 +306,10 @@ public class RemoteDataService {
             if (storeId != null) {
                 headers.add("storeId", storeId);
             }
+            Set<String> stores = getSubscribedStores();
+            if (stores.size() > 1) {
+                headers.add("storeIds", String.join(",", stores));
+            }
 
             // 连接STOMP服务器
             String stompUrl = serverUrl + wsPath;
@@ -149,8 +318,16 @@ public class RemoteDataService {
             StompSessionHandler sessionHandler = new StompSessionHandlerAdapter() {
                 @Override
                 public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                    if (generation != connectGeneration.get()) {
+                        // 已经超时放弃的连接尝试
+                        session.disconnect();
+                        return;
+                    }
                     stompSession = session;
                     isConnected.set(true);
+                    connecting.set(false);
+                    lastPushSeqs.clear();
+                    onConnected();
                     log.info("STOMP连接已建立，用户ID: {}, 商户ID: {}", userId, merchantId);
 
                     // 订阅商户特定的打印主题
@@ -158,70 +335,184 @@ public class RemoteDataService {
                     //    session.subscribe("/topic/merchant/" + merchantId + "/print-tasks", this);
                     //    log.info("已订阅商户专属打印任务主题: /topic/merchant/{}", merchantId);
                     //}
-                    if (storeId != null) {
-                        session.subscribe("/topic/store/" + storeId + "/print-tasks", this);
-                        log.info("已订阅门店专属打印任务主题: /topic/store/{}", storeId);
+                    // 同一个连接订阅所有门店，每个订阅的消息带上所属门店
+                    for (String store : getSubscribedStores()) {
+                        session.subscribe("/topic/store/" + store + "/print-tasks", new StoreFrameHandler(store));
+                        log.info("已订阅门店专属打印任务主题: /topic/store/{}", store);
                     }
 
                     // 也订阅通用打印主题作为备份
                     //todo暂时不订阅
                     //session.subscribe("/topic/print-tasks", this);
                     log.info("已订阅通用打印任务主题");
+
+                    // 新连接上服务器不知道之前的暂停请求
+                    if (ingestStage.isPaused()) {
+                        sendFlowControl(true);
+                    }
+
+                    // 断开期间可能有遗漏，重新连接后先补同步一次
+                    onPushGap("推送已重新连接");
                 }
 
                 @Override
                 public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload, Throwable exception) {
                     log.error("STOMP处理异常", exception);
-                    isConnected.set(false);
-                    scheduleReconnect();
+                    // 单条消息处理失败，连接仍然可用时不重连
+                    if ((session != null && session.isConnected()) || generation != connectGeneration.get()) {
+                        return;
+                    }
+                    onConnectionLost("推送异常", exception);
                 }
 
                 @Override
                 public void handleTransportError(StompSession session, Throwable exception) {
                     log.error("STOMP传输错误", exception);
-                    isConnected.set(false);
-                    scheduleReconnect();
-                }
-
-                @Override
-                public Type getPayloadType(StompHeaders headers) {
-                    return Map.class;
-                }
-
-                @Override
-                public void handleFrame(StompHeaders headers, Object payload) {
-                    if (payload instanceof Map) {
-                        try {
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> message = (Map<String, Object>) payload;
-                            log.debug("收到STOMP消息: {}", message);
-
-                            // 处理打印任务消息
-                            if ("print_task".equals(message.get("type"))) {
-                                // 转换为PrintTask对象
-                                PrintTask task = convertToPrintTask(message);
-
-                                // 添加到打印队列
-                                printQueueManager.addPrintTask(task);
-                                log.info("已从STOMP接收并添加打印任务: {}", task.getTaskId());
-                            }
-                        } catch (Exception e) {
-                            log.error("处理STOMP消息失败", e);
-                        }
+                    if (generation != connectGeneration.get()) {
+                        return;
                     }
+                    onConnectionLost("推送断开", exception);
                 }
+
             };
 
             // 连接STOMP服务器
-            stompClient.connect(stompUrl, sessionHandler);
+            ListenableFuture<StompSession> future = stompClient.connect(stompUrl, handshakeHeaders, headers, sessionHandler);
+            scheduleConnectTimeout(generation, future);
 
         } catch (Exception e) {
             log.error("连接STOMP服务失败", e);
-            // 安排重连
-            scheduleReconnect();
+            onConnectionLost("推送连接失败", e);
+        }
+    }
+
+    /**
+     * 连接尝试超时未完成时取消，避免connecting一直为true而不再重连
+     */
+    private void scheduleConnectTimeout(long generation, Future<StompSession> future) {
+        try {
+            reconnectExecutor.schedule(() -> {
+                if (future.isDone() || !connectGeneration.compareAndSet(generation, generation + 1)) {
+                    return;
+                }
+                log.warn("STOMP连接{}毫秒内未完成，放弃本次连接", connectTimeout);
+                future.cancel(true);
+                onConnectionLost("推送连接超时", new TimeoutException("STOMP连接超时"));
+            }, connectTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 正在关闭
+        }
+    }
+
+    /**
+     * 单个门店订阅的消息处理
+     */
+    private class StoreFrameHandler implements StompFrameHandler {
+        private final String store;
+
+        StoreFrameHandler(String store) {
+            this.store = store;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return PrintTaskMessage.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            if (payload instanceof PrintTaskMessage) {
+                PrintTaskMessage message = (PrintTaskMessage) payload;
+                log.debug("收到门店{}的STOMP消息: {}", store, message);
+                checkPushSeq(store, message.getSeq());
+                if (message.getStoreId() == null) {
+                    message.setStoreId(store);
+                }
+
+                // 打印任务交给接收队列处理，不在接收线程上写磁盘和上报
+                if (message.isPrintTask() && !ingestStage.offer(message)) {
+                    // 被拒绝的任务由补同步获取
+                    onPushGap("推送接收队列已满");
+                }
+            }
+        }
+    }
+
+    /**
+     * 需要打印的门店：多门店配置的门店、登录账号的门店和账号可以打印的其他门店
+     */
+    public Set<String> getSubscribedStores() {
+        Set<String> stores = new LinkedHashSet<>(storeProperties.getStores().keySet());
+        if (storeId != null && !storeId.isEmpty()) {
+            stores.add(storeId);
+        }
+        stores.addAll(storeIds);
+        return stores;
+    }
+
+    private void onConnected() {
+        connects.incrementAndGet();
+        lastConnectedTime = LocalDateTime.now();
+        synchronized (reconnectLock) {
+            consecutiveFailures = 0;
         }
     }
 
+    /**
+     * 已建立的连接断开或连接尝试失败，都只安排一次重连
+     */
+    private void onConnectionLost(String reason, Throwable exception) {
+        lastError = exception != null ? String.valueOf(exception.getMessage()) : reason;
+        if (isConnected.getAndSet(false)) {
+            disconnects.incrementAndGet();
+            lastDisconnectedTime = LocalDateTime.now();
+            onPushGap(reason);
+        } else if (connecting.get()) {
+            connectFailures.incrementAndGet();
+            synchronized (reconnectLock) {
+                consecutiveFailures++;
+            }
+        }
+        connecting.set(false);
+        scheduleReconnect();
+    }
+
+
+    /**
+     * 在接收队列线程上处理打印任务消息
+     */
+    private void handlePushMessage(PrintTaskMessage message) {
+        // 转换为PrintTask对象
+        PrintTask task = convertToPrintTask(message);
+
+        // 添加到打印队列，轮询已经收到的任务不再重复添加
+        if (printQueueManager.addPrintTask(task)) {
+            log.info("已从STOMP接收并添加打印任务: {}", task.getTaskId());
+        }
+    }
+
+    /**
+     * 通知服务器暂停或恢复推送
+     */
+    private void sendFlowControl(boolean pause) {
+        StompSession session = stompSession;
+        if (session == null || !session.isConnected()) {
+            return;
+        }
+        Map<String, Object> message = new HashMap<>();
+        message.put("storeId", storeId);
+        message.put("storeIds", getSubscribedStores());
+        message.put("paused", pause);
+        message.put("queued", ingestStage.getStatistics().get("queued"));
+        session.send(flowDestination, message);
+    }
+
+    /**
+     * 推送消息接收队列统计
+     */
+    public Map<String, Object> getIngestStatistics() {
+        return ingestStage.getStatistics();
+    }
 
     // 添加断开连接方法
     private void disconnectStompClient() {
@@ -241,79 +532,227 @@ public class RemoteDataService {
     /**
      * 将消息转换为PrintTask对象
      */
-    private PrintTask convertToPrintTask(Map<String, Object> message) {
-        String taskId = message.containsKey("taskId") ?
-                (String) message.get("taskId") : UUID.randomUUID().toString();
-
-        String content = message.containsKey("content") ?
-                (String) message.get("content") : "";
+    private PrintTask convertToPrintTask(PrintTaskMessage message) {
+        String taskId = message.getTaskId() != null ?
+                message.getTaskId() : UUID.randomUUID().toString();
 
-        String printerName = message.containsKey("printerName") ?
-                (String) message.get("printerName") : null;
-
-        return PrintTask.builder()
+        PrintTask task = PrintTask.builder()
                 .taskId(taskId)
-                .content(content)
                 .status(PrintTaskStatus.PENDING)
                 .createTime(LocalDateTime.now())
                 .retryCount(0)
-                .printerName(printerName)
+                .printerName(message.getPrinterName())
+                .contentType(message.getContentType())
+                .storeId(message.getStoreId())
                 .build();
+
+        if (message.hasRawContent()) {
+            // JSON格式的订单内容直接从消息字节压缩保存，打印时再解析
+            task.useContentBytes(message.getFrame(), message.getContentOffset(), message.getContentLength());
+            if (task.getContentType() == null) {
+                task.setContentType(PrintContentType.RECEIPT);
+            }
+        } else {
+            task.setContent(message.getContentText() != null ? message.getContentText() : "");
+        }
+        return task;
     }
 
     /**
      * 安排STOMP重连
+     * 已有待执行的重连时不再安排；按连续失败次数指数退避，加入随机抖动
      */
     private void scheduleReconnect() {
-        new Thread(() -> {
+        synchronized (reconnectLock) {
+            if (pendingReconnect != null && !pendingReconnect.isDone()) {
+                return;
+            }
+            long delay = retryInterval << Math.min(consecutiveFailures, 20);
+            delay = Math.min(delay, maxRetryInterval);
+            delay = applyJitter(delay, retryJitter);
+            reconnectAt = System.currentTimeMillis() + delay;
             try {
-                log.info("计划在{}毫秒后重新连接STOMP", retryInterval);
-                Thread.sleep(retryInterval);
-                connectStompClient();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("STOMP重连线程被中断", e);
+                pendingReconnect = reconnectExecutor.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+                log.info("计划在{}毫秒后重新连接STOMP，连续失败{}次", delay, consecutiveFailures);
+            } catch (RejectedExecutionException e) {
+                // 正在关闭
             }
-        }).start();
+        }
+    }
+
+    private void reconnect() {
+        synchronized (reconnectLock) {
+            pendingReconnect = null;
+            reconnectAt = 0;
+        }
+        connectStompClient();
     }
 
     /**
-     * 定期同步打印任务
-     * 作为WebSocket的备份机制
+     * 推送连接状态统计
      */
-    @Scheduled(fixedDelayString = "${remote.poll.interval:10000}")
-    public void syncPrintTasks() {
-        try {
-            // 添加用户ID到连接信息
-            Integer userId = getUserId();
-            log.debug("开始同步打印任务");
+    public Map<String, Object> getConnectionStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        String state = isServerConnected() ? "CONNECTED" : connecting.get() ? "CONNECTING" : "DISCONNECTED";
+        stats.put("state", state);
+        stats.put("connectAttempts", connectAttempts.get());
+        stats.put("connects", connects.get());
+        stats.put("connectFailures", connectFailures.get());
+        stats.put("disconnects", disconnects.get());
+        synchronized (reconnectLock) {
+            stats.put("consecutiveFailures", consecutiveFailures);
+        }
+        long wait = reconnectAt - System.currentTimeMillis();
+        stats.put("reconnectInMs", reconnectAt > 0 ? Math.max(wait, 0) : null);
+        stats.put("lastConnectedTime", lastConnectedTime);
+        stats.put("lastDisconnectedTime", lastDisconnectedTime);
+        stats.put("lastError", lastError);
+        return stats;
+    }
 
-            // 添加用户ID作为参数
-            String url = serverUrl + "/api/print-tasks/pending";
-            if (userId != null) {
-                url += "?userId=" + userId;
+    /**
+     * 定期同步打印任务
+     * 作为WebSocket的备份机制，按游标增量获取；登录后也会调用，同一时间只进行一次同步。
+     * 多个门店时逐个门店获取，各门店使用自己的游标
+     */
+    public synchronized void syncPrintTasks() {
+        log.debug("开始同步打印任务");
+        boolean fetched = false;
+        boolean received = false;
+        for (String scope : getSyncScopes()) {
+            FetchResult result = syncScope(scope);
+            if (result != null) {
+                fetched = true;
+                received |= !result.notModified && !result.tasks.isEmpty();
             }
+        }
+        if (!fetched) {
+            return;
+        }
+        if (!received) {
+            catchingUp = false;
+        } else if (isServerConnected()) {
+            // 推送正常时轮询仍然获取到任务，说明推送有遗漏
+            catchingUp = true;
+        }
+    }
 
-            List<PrintTask> tasks = fetchPrintTasks();
+    /**
+     * 同步一个范围的打印任务
+     *
+     * @return 获取失败时返回null
+     */
+    private FetchResult syncScope(String scope) {
+        try {
+            FetchResult result = fetchPrintTasks(scope);
+            if (result == null || result.notModified) {
+                return result;
+            }
+            List<PrintTask> tasks = result.tasks;
+            String scopeStore = scope.startsWith(STORE_SCOPE) ? scope.substring(STORE_SCOPE.length()) : null;
 
+            List<String> persisted = Collections.emptyList();
             if (!tasks.isEmpty()) {
                 log.info("从服务器获取到{}个打印任务", tasks.size());
+                List<String> accepted = new ArrayList<>(tasks.size());
                 for (PrintTask task : tasks) {
                     // 确保任务状态和时间设置正确
                     task.setStatus(PrintTaskStatus.PENDING);
                     if (task.getCreateTime() == null) {
                         task.setCreateTime(LocalDateTime.now());
                     }
+                    if (task.getStoreId() == null) {
+                        task.setStoreId(scopeStore);
+                    }
 
-                    // 添加到打印队列
-                    printQueueManager.addPrintTask(task);
+                    // 添加到打印队列，单个任务失败不影响其他任务；已接收过的任务不再添加，但仍然确认
+                    try {
+                        printQueueManager.addPrintTask(task);
+                        accepted.add(task.getTaskId());
+                    } catch (Exception e) {
+                        log.error("添加同步的打印任务失败: {}", task.getTaskId(), e);
+                    }
+                }
 
-                    // 可选：通知服务器任务已接收
-                    notifyTaskReceived(task.getTaskId());
+                // 任务落盘后才通知服务器已接收，未确认的任务下次同步时服务器会重新下发
+                persisted = printTaskPersistence.persistNow(accepted);
+                if (!persisted.isEmpty()) {
+                    notifyTasksReceived(persisted);
                 }
             }
+
+            // 全部任务落盘后才推进游标，否则下次从原游标重新获取
+            if (persisted.size() == tasks.size()) {
+                syncCursorStore.update(scope, result.cursor, result.etag);
+            }
+            return result;
         } catch (Exception e) {
-            log.error("同步打印任务失败", e);
+            log.error("同步打印任务失败: {}", scope, e);
+            return null;
+        }
+    }
+
+    /**
+     * 按推送状态计算下次轮询的等待时间
+     * 推送正常且上次同步没有新任务时按空闲间隔轮询，推送断开或正在补同步时按正常间隔轮询
+     */
+    private long nextPollDelay() {
+        long base = isServerConnected() && !catchingUp ? idlePollInterval : pollInterval;
+        return applyJitter(base, pollJitter);
+    }
+
+    // 在基准时间上下按比例随机浮动
+    private static long applyJitter(long base, double jitter) {
+        long spread = (long) (base * jitter);
+        if (spread <= 0) {
+            return base;
+        }
+        return base - spread + ThreadLocalRandom.current().nextLong(spread * 2 + 1);
+    }
+
+    // 已经安排了更早的同步时保留原来的
+    private void scheduleNextPoll(long delay) {
+        synchronized (pollLock) {
+            if (nextPoll != null && !nextPoll.isDone()) {
+                if (nextPoll.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                    return;
+                }
+                nextPoll.cancel(false);
+            }
+            nextPoll = scheduledExecutor.schedule(this::poll, delay, TimeUnit.MILLISECONDS);
+        }
+        log.debug("{}ms后同步打印任务", delay);
+    }
+
+    private void poll() {
+        synchronized (pollLock) {
+            nextPoll = null;
+        }
+        try {
+            syncPrintTasks();
+        } finally {
+            scheduleNextPoll(nextPollDelay());
+        }
+    }
+
+    /**
+     * 推送可能有遗漏时尽快同步一次，等待时间加入随机浮动，避免服务器恢复后所有门店同时请求
+     */
+    private void onPushGap(String reason) {
+        catchingUp = true;
+        long delay = ThreadLocalRandom.current().nextLong((long) (pollInterval * pollJitter) + 1);
+        log.info("{}，{}ms后补同步打印任务", reason, delay);
+        scheduleNextPoll(delay);
+    }
+
+    // 推送消息带序号时检查是否连续，各门店的序号分别计数
+    private void checkPushSeq(String store, Long seq) {
+        if (seq == null) {
+            return;
+        }
+        Long last = lastPushSeqs.put(store, seq);
+        if (last != null && seq > last + 1) {
+            onPushGap("门店" + store + "推送消息序号不连续(" + last + " -> " + seq + ")");
         }
     }
 
@@ -321,30 +760,65 @@ public class RemoteDataService {
      * 从服务器获取待处理的打印任务
      */
     public List<PrintTask> fetchPrintTasks() {
+        List<PrintTask> tasks = new ArrayList<>();
+        for (String scope : getSyncScopes()) {
+            FetchResult result = fetchPrintTasks(scope);
+            if (result != null) {
+                tasks.addAll(result.tasks);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * 增量获取打印任务
+     * 带上次的游标(since参数)和ETag(If-None-Match)，没有变化时服务器返回304，不传输任务列表；
+     * 服务器不支持游标时返回完整列表，不影响使用
+     *
+     * @return 获取失败时返回null
+     */
+    private FetchResult fetchPrintTasks(String scope) {
         try {
             String url = serverUrl + "/api/print-tasks/pending";
-            // 优先使用store_id过滤
-            if (storeId != null && !storeId.isEmpty()) {
-                url += "?storeId=" + storeId;
+            // 按门店过滤，没有门店时按商户过滤
+            if (scope.startsWith(STORE_SCOPE)) {
+                url += "?storeId=" + URLEncoder.encode(scope.substring(STORE_SCOPE.length()), "UTF-8");
+            } else if (scope.startsWith(MERCHANT_SCOPE)) {
+                url += "?merchantId=" + URLEncoder.encode(scope.substring(MERCHANT_SCOPE.length()), "UTF-8");
             }
-            // 次之使用merchant_id
-            else if (merchantId != null && !merchantId.isEmpty()) {
-                url += "?merchantId=" + merchantId;
+
+            String cursor = syncCursorStore.getCursor(scope);
+            if (cursor != null) {
+                url += (url.contains("?") ? "&" : "?") + "since=" + URLEncoder.encode(cursor, "UTF-8");
             }
 
             log.debug("正在从{}获取打印任务", url);
 
-            HttpEntity<?> requestEntity = createAuthenticatedRequest();
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(createAuthenticatedRequest().getHeaders());
+            String etag = syncCursorStore.getEtag(scope);
+            if (etag != null) {
+                headers.setIfNoneMatch(etag);
+            }
 
             ResponseEntity<List<PrintTask>> response = restTemplate.exchange(
                     url,
                     HttpMethod.GET,
-                    requestEntity,
+                    new HttpEntity<>(headers),
                     new ParameterizedTypeReference<List<PrintTask>>() {}
             );
 
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                log.debug("打印任务没有变化");
+                return FetchResult.NOT_MODIFIED;
+            }
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                return response.getBody();
+                HttpHeaders responseHeaders = response.getHeaders();
+                // 服务器没有返回新游标时保留原游标
+                String nextCursor = responseHeaders.getFirst(CURSOR_HEADER);
+                return new FetchResult(response.getBody(),
+                        nextCursor != null ? nextCursor : cursor,
+                        responseHeaders.getETag());
             } else {
                 log.warn("获取打印任务返回非成功状态码: {}", response.getStatusCode());
             }
@@ -352,12 +826,61 @@ public class RemoteDataService {
             log.error("获取打印任务失败", e);
         }
 
-        return Collections.emptyList();
+        return null;
+    }
+
+    // 同步范围，与请求的过滤条件一致，每个门店使用各自的游标
+    private List<String> getSyncScopes() {
+        Set<String> stores = getSubscribedStores();
+        if (!stores.isEmpty()) {
+            List<String> scopes = new ArrayList<>(stores.size());
+            for (String store : stores) {
+                scopes.add(STORE_SCOPE + store);
+            }
+            return scopes;
+        }
+        if (merchantId != null && !merchantId.isEmpty()) {
+            return Collections.singletonList(MERCHANT_SCOPE + merchantId);
+        }
+        return Collections.singletonList("all");
     }
 
     /**
      * 通知服务器打印任务已接收
+     * 一次同步的任务合并为一个请求，服务器不支持批量确认时逐个确认
      */
+    private void notifyTasksReceived(List<String> taskIds) {
+        long since = ackBatchUnsupportedSince;
+        if (taskIds.size() > 1 && (since == 0 || System.currentTimeMillis() - since >= ackBatchRetryInterval)) {
+            try {
+                restTemplate.exchange(
+                        serverUrl + ackBatchPath,
+                        HttpMethod.POST,
+                        new HttpEntity<>(taskIds, createAuthenticatedRequest().getHeaders()),
+                        Void.class
+                );
+                ackBatchUnsupportedSince = 0;
+                log.debug("已批量通知服务器任务已接收: {}个", taskIds.size());
+                return;
+            } catch (HttpClientErrorException | HttpServerErrorException e) {
+                HttpStatus status = e.getStatusCode();
+                if (status != HttpStatus.NOT_FOUND && status != HttpStatus.METHOD_NOT_ALLOWED
+                        && status != HttpStatus.NOT_IMPLEMENTED) {
+                    log.error("批量通知服务器任务已接收失败: {}个", taskIds.size(), e);
+                    return;
+                }
+                ackBatchUnsupportedSince = System.currentTimeMillis();
+                log.warn("远程服务器不支持批量确认接收({})，改为逐个确认", status);
+            } catch (Exception e) {
+                log.error("批量通知服务器任务已接收失败: {}个", taskIds.size(), e);
+                return;
+            }
+        }
+        for (String taskId : taskIds) {
+            notifyTaskReceived(taskId);
+        }
+    }
+
     private void notifyTaskReceived(String taskId) {
         try {
             String url = serverUrl + "/api/print-tasks/" + taskId + "/received";
@@ -448,4 +971,27 @@ public class RemoteDataService {
     public boolean isServerConnected() {
         return isConnected.get() && stompSession != null && stompSession.isConnected();
     }
+
+    /**
+     * 一次增量获取的结果
+     */
+    private static class FetchResult {
+        static final FetchResult NOT_MODIFIED = new FetchResult(Collections.emptyList(), null, null, true);
+
+        final List<PrintTask> tasks;
+        final String cursor;
+        final String etag;
+        final boolean notModified;
+
+        FetchResult(List<PrintTask> tasks, String cursor, String etag) {
+            this(tasks, cursor, etag, false);
+        }
+
+        private FetchResult(List<PrintTask> tasks, String cursor, String etag, boolean notModified) {
+            this.tasks = tasks;
+            this.cursor = cursor;
+            this.etag = etag;
+            this.notModified = notModified;
+        }
+    }
 }
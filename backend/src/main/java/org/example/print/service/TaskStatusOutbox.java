@@ -0,0 +1,422 @@
+package org.example.print.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.bean.PrintTaskStatus;
+import org.example.print.persistence.TaskJournal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务状态上报发件箱
+ * 状态变化先记入发件箱，同一任务只保留最新状态，积累到批量大小或到达刷写间隔时合并为一次批量请求发送；
+ * 服务器不支持批量接口(404/405/501)时改为逐个任务上报，过一段时间后再尝试批量接口。
+ * 发件箱的加入和发送完成都追加到独立的日志中，重启后未发送的状态继续发送；
+ * 由专用的发送线程发送，打印流程只负责加入。发送失败的状态放回发件箱，按指数退避重试，期间产生的更新状态优先
+ */
+@Service
+@Slf4j
+public class TaskStatusOutbox {
+
+    // 日志记录类型
+    private static final byte RECORD_ENQUEUE = 1;
+    private static final byte RECORD_SENT = 2;
+
+    private static final PrintTaskStatus[] STATUSES = PrintTaskStatus.values();
+
+    private final RestTemplate restTemplate;
+
+    @Value("${app.data.dir:./data}")
+    private String baseDir;
+
+    @Value("${remote.server.url:http://localhost:9090}")
+    private String serverUrl;
+
+    @Value("${remote.auth.enabled:false}")
+    private boolean authEnabled;
+
+    @Value("${remote.auth.username:}")
+    private String username;
+
+    @Value("${remote.auth.password:}")
+    private String password;
+
+    // 达到该数量时立即发送
+    @Value("${remote.status.batch-size:50}")
+    private int batchSize;
+
+    // 批量上报接口
+    @Value("${remote.status.batch-path:/api/print-tasks/status/batch}")
+    private String batchPath;
+
+    // 服务器不支持批量接口时，间隔多久再尝试(毫秒)
+    @Value("${remote.status.batch-retry-interval:600000}")
+    private long batchRetryInterval;
+
+    // 发送间隔(毫秒)
+    @Value("${remote.status.flush-interval:1000}")
+    private long flushInterval;
+
+    // 发送失败后首次重试的等待时间(毫秒)，之后每次失败翻倍
+    @Value("${remote.status.retry-initial:1000}")
+    private long retryInitial;
+
+    // 重试等待时间上限(毫秒)
+    @Value("${remote.status.retry-max:60000}")
+    private long retryMax;
+
+    // 日志超过该大小后压缩(字节)
+    @Value("${remote.status.compact-threshold:1048576}")
+    private long compactThreshold;
+
+    // 待发送的状态，按首次加入顺序排列；同时保护日志写入顺序
+    private final Map<String, PrintTaskStatus> pending = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "status-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TaskJournal journal;
+    // 上次压缩时的日志位置
+    private long compactedPosition;
+
+    // 不支持批量接口时记录的时间，0表示支持
+    private volatile long batchUnsupportedSince;
+    // 连续失败次数和下次允许发送的时间
+    private int consecutiveFailures;
+    private volatile long retryAt;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @Autowired
+    public TaskStatusOutbox(RestTemplate remoteRestTemplate) {
+        this.restTemplate = remoteRestTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        File dir = new File(baseDir, "outbox");
+        journal = new TaskJournal(dir, 1024 * 1024, true);
+        try {
+            journal.open(this::applyRecord);
+        } catch (IOException e) {
+            throw new IllegalStateException("打开状态发件箱日志失败: " + dir, e);
+        }
+        if (!pending.isEmpty()) {
+            log.info("状态发件箱中有{}个未发送的任务状态", pending.size());
+        }
+        compact();
+        sender.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sender.shutdown();
+        // 未发送的状态保留在日志中，下次启动后发送
+        synchronized (flushLock) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("关闭状态发件箱日志失败", e);
+            }
+        }
+    }
+
+    /**
+     * 记录任务的最新状态，等待发送线程批量发送
+     */
+    public void enqueue(String taskId, PrintTaskStatus status) {
+        boolean full;
+        synchronized (pending) {
+            try {
+                journal.append(RECORD_ENQUEUE, encode(taskId, status));
+            } catch (IOException e) {
+                // 仍然在内存中发送，只是重启后不再补发
+                log.error("写入状态发件箱日志失败: {}", taskId, e);
+            }
+            if (pending.put(taskId, status) != null) {
+                coalesced.incrementAndGet();
+            }
+            full = pending.size() >= batchSize;
+        }
+        enqueued.incrementAndGet();
+        if (full && retryAt <= System.currentTimeMillis() && !sender.isShutdown()) {
+            try {
+                sender.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // 正在关闭
+            }
+        }
+    }
+
+    /**
+     * 发送发件箱中的状态，失败后等待退避时间再发送
+     */
+    private void flush() {
+        synchronized (flushLock) {
+            try {
+                if (journal.getWrittenBytes() - compactedPosition >= compactThreshold) {
+                    compact();
+                }
+                if (System.currentTimeMillis() < retryAt) {
+                    return;
+                }
+                // 发送前先让加入记录落盘，发送期间进程退出也能补发
+                journal.sync(journal.getWrittenBytes());
+                while (true) {
+                    Map<String, PrintTaskStatus> batch = takeBatch();
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    Map<String, PrintTaskStatus> failed = send(batch);
+                    markSent(batch, failed);
+                    if (!failed.isEmpty()) {
+                        requeue(failed);
+                        scheduleRetry();
+                        return;
+                    }
+                    consecutiveFailures = 0;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("发送状态发件箱失败", e);
+            }
+        }
+    }
+
+    /**
+     * 发件箱统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (pending) {
+            stats.put("pending", pending.size());
+        }
+        stats.put("enqueued", enqueued.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("sent", sent.get());
+        stats.put("requests", requests.get());
+        stats.put("failures", failures.get());
+        stats.put("batchSupported", batchUnsupportedSince == 0);
+        long wait = retryAt - System.currentTimeMillis();
+        stats.put("retryInMs", Math.max(wait, 0));
+        return stats;
+    }
+
+    // 按连续失败次数指数退避，加入随机抖动避免多台设备同时重试
+    private void scheduleRetry() {
+        consecutiveFailures++;
+        long delay = retryInitial << Math.min(consecutiveFailures - 1, 20);
+        delay = Math.min(delay, retryMax);
+        delay += ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+        retryAt = System.currentTimeMillis() + delay;
+        log.warn("任务状态发送失败，{}ms后重试，连续失败{}次", delay, consecutiveFailures);
+    }
+
+    // 记录已发送或已放弃的状态，失败的状态仍保留在日志中
+    private void markSent(Map<String, PrintTaskStatus> batch, Map<String, PrintTaskStatus> failed) throws IOException {
+        synchronized (pending) {
+            for (Map.Entry<String, PrintTaskStatus> entry : batch.entrySet()) {
+                if (!failed.containsKey(entry.getKey())) {
+                    journal.append(RECORD_SENT, encode(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 把未发送的状态写成快照，删除旧的日志段
+     */
+    private void compact() {
+        long upToSegment;
+        List<TaskJournal.Record> records;
+        try {
+            synchronized (pending) {
+                upToSegment = journal.roll();
+                records = new ArrayList<>(pending.size());
+                for (Map.Entry<String, PrintTaskStatus> entry : pending.entrySet()) {
+                    records.add(new TaskJournal.Record(RECORD_ENQUEUE, encode(entry.getKey(), entry.getValue())));
+                }
+                compactedPosition = journal.getWrittenBytes();
+            }
+            journal.writeSnapshot(upToSegment, records);
+        } catch (IOException e) {
+            log.error("压缩状态发件箱日志失败", e);
+        }
+    }
+
+    private void applyRecord(byte type, byte[] payload) {
+        if (payload.length < 1) {
+            return;
+        }
+        int ordinal = payload[0];
+        if (ordinal < 0 || ordinal >= STATUSES.length) {
+            log.warn("状态发件箱日志中的状态无法识别，已忽略: {}", ordinal);
+            return;
+        }
+        PrintTaskStatus status = STATUSES[ordinal];
+        String taskId = new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+        if (type == RECORD_ENQUEUE) {
+            pending.put(taskId, status);
+        } else if (type == RECORD_SENT) {
+            // 发送期间加入了更新的状态时保留
+            pending.remove(taskId, status);
+        }
+    }
+
+    // [状态序号][任务ID]
+    private static byte[] encode(String taskId, PrintTaskStatus status) {
+        byte[] id = taskId.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[id.length + 1];
+        payload[0] = (byte) status.ordinal();
+        System.arraycopy(id, 0, payload, 1, id.length);
+        return payload;
+    }
+
+    private Map<String, PrintTaskStatus> takeBatch() {
+        Map<String, PrintTaskStatus> batch = new LinkedHashMap<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<String, PrintTaskStatus>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<String, PrintTaskStatus> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        return batch;
+    }
+
+    // 放回发送失败的状态，期间已有更新状态的任务不覆盖
+    private void requeue(Map<String, PrintTaskStatus> failed) {
+        synchronized (pending) {
+            Map<String, PrintTaskStatus> merged = new LinkedHashMap<>(failed);
+            for (Map.Entry<String, PrintTaskStatus> entry : pending.entrySet()) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+            pending.clear();
+            pending.putAll(merged);
+        }
+    }
+
+    /**
+     * 发送一批状态
+     *
+     * @return 发送失败的状态
+     */
+    private Map<String, PrintTaskStatus> send(Map<String, PrintTaskStatus> batch) {
+        if (batch.size() > 1 && isBatchEnabled()) {
+            try {
+                sendBatch(batch);
+                batchUnsupportedSince = 0;
+                sent.addAndGet(batch.size());
+                log.debug("已批量发送任务状态到远程服务器: {}个", batch.size());
+                return new HashMap<>();
+            } catch (HttpClientErrorException | HttpServerErrorException e) {
+                if (!isBatchUnsupported(e.getStatusCode())) {
+                    failures.incrementAndGet();
+                    log.error("批量更新服务器任务状态失败: {}个", batch.size(), e);
+                    return batch;
+                }
+                batchUnsupportedSince = System.currentTimeMillis();
+                log.warn("远程服务器不支持批量上报任务状态({})，改为逐个上报", e.getStatusCode());
+            } catch (RestClientException e) {
+                failures.incrementAndGet();
+                log.error("批量更新服务器任务状态失败: {}个", batch.size(), e);
+                return batch;
+            }
+        }
+
+        Map<String, PrintTaskStatus> failed = new LinkedHashMap<>();
+        for (Map.Entry<String, PrintTaskStatus> entry : batch.entrySet()) {
+            if (!failed.isEmpty()) {
+                // 前面的请求已经失败，剩余的留到下次
+                failed.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            try {
+                sendOne(entry.getKey(), entry.getValue());
+                sent.incrementAndGet();
+                log.debug("已发送任务状态更新到远程服务器: {}", entry.getKey());
+            } catch (HttpClientErrorException e) {
+                // 服务器拒绝的状态重发也不会成功
+                failures.incrementAndGet();
+                log.error("更新服务器任务状态被拒绝: {}, 状态: {}, {}", entry.getKey(), entry.getValue(), e.getStatusCode());
+            } catch (RestClientException e) {
+                failures.incrementAndGet();
+                log.error("更新服务器任务状态失败: {}, 状态: {}", entry.getKey(), entry.getValue(), e);
+                failed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return failed;
+    }
+
+    private void sendBatch(Map<String, PrintTaskStatus> batch) {
+        List<Map<String, String>> body = new ArrayList<>(batch.size());
+        for (Map.Entry<String, PrintTaskStatus> entry : batch.entrySet()) {
+            Map<String, String> item = new HashMap<>();
+            item.put("taskId", entry.getKey());
+            item.put("status", entry.getValue().name());
+            body.add(item);
+        }
+        requests.incrementAndGet();
+        restTemplate.exchange(serverUrl + batchPath, HttpMethod.POST, new HttpEntity<>(body, createHeaders()), Void.class);
+    }
+
+    private void sendOne(String taskId, PrintTaskStatus status) {
+        String url = serverUrl + "/api/print-tasks/" + taskId + "/status";
+        requests.incrementAndGet();
+        restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(status.name(), createHeaders()), Void.class);
+    }
+
+    private boolean isBatchEnabled() {
+        long since = batchUnsupportedSince;
+        return since == 0 || System.currentTimeMillis() - since >= batchRetryInterval;
+    }
+
+    private static boolean isBatchUnsupported(HttpStatus status) {
+        return status == HttpStatus.NOT_FOUND
+                || status == HttpStatus.METHOD_NOT_ALLOWED
+                || status == HttpStatus.NOT_IMPLEMENTED;
+    }
+
+    private HttpHeaders createHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if (authEnabled) {
+            String auth = username + ":" + password;
+            headers.set("Authorization", "Basic " +
+                    java.util.Base64.getEncoder().encodeToString(auth.getBytes()));
+        }
+        return headers;
+    }
+}
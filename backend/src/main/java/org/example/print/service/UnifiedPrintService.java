@@ -1,18 +1,22 @@
 package org.example.print.service;
 
+import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 import org.example.print.bean.PrintTask;
 import org.example.print.bean.PrintTaskStatus;
 import org.example.print.component.PrintMetrics;
+import org.example.print.bean.PrinterProfile;
 import org.example.print.component.PrintTaskPersistence;
+import org.example.print.component.PrinterProfileRegistry;
+import org.example.print.render.ReceiptLayout;
+import org.example.print.render.ReceiptWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 
 import javax.print.*;
@@ -30,6 +34,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -64,15 +69,26 @@ public class UnifiedPrintService {
     private PrintTaskPersistence printTaskPersistence;
 
 
-    @Value("${print.qrcode-path:static/qrcode.jpg}")
-    private String qrcodePath;
+    @Autowired
+    private PrinterProfileRegistry printerProfileRegistry;
+
+    // 小程序二维码内容，配置后使用打印机原生二维码指令代替图片
+    @Value("${print.qrcode-content:}")
+    private String qrcodeContent;
 
     //模拟打印
     @Value("${print.test-mode:false}")
     private boolean testMode;
 
     @Autowired
-    private org.springframework.core.io.ResourceLoader resourceLoader;
+    private PdfPrintService pdfPrintService;
+
+    @Autowired
+    private PrinterAssetService printerAssetService;
+
+    @Autowired
+    @Qualifier("pdfPrintExecutor")
+    private Executor pdfPrintExecutor;
 
     // 获取所有打印机
     public List<PrintService> getAllPrinters() {
@@ -128,6 +144,11 @@ public class UnifiedPrintService {
 
     // 执行打印任务
     public CompletableFuture<PrintResult> executePrint(PrintTask task) {
+        // PDF文档在专用线程池中逐页打印，不占用小票打印线程
+        if (!testMode && pdfPrintService.isPdfTask(task)) {
+            return CompletableFuture.supplyAsync(() -> executePdfPrint(task), pdfPrintExecutor);
+        }
+
         return CompletableFuture.supplyAsync(() -> {
             try {
 
@@ -155,82 +176,45 @@ public class UnifiedPrintService {
                     throw new PrinterNotAvailableException("找不到可用的打印机");
                 }
 
-                String formattedContent;
+                PrinterProfile profile = printerProfileRegistry.getProfile(printService);
+                ReceiptWriter writer = createReceiptWriter(printService, profile);
+
+                // 内容可能是压缩保存的，直接解压为UTF-8字节，由fastjson解析一次，不先转换为字符串
+                byte[] content = task.contentBytes();
+                if (content == null) {
+                    content = new byte[0];
+                }
 
                 // 尝试解析为JSON，如果失败则当作纯文本处理
                 try {
-                    JSONObject printData = JSONObject.parseObject(task.getContent());
-                    formattedContent = formatPrintContent(printData);
+                    JSONObject printData = JSON.parseObject(content);
+                    formatPrintContent(printData, writer);
                 } catch (Exception e) {
                     // 如果不是JSON格式，直接使用内容
                     log.info("内容不是JSON格式，按纯文本处理");
-                    formattedContent = task.getContent();
+                    writer = createReceiptWriter(printService, profile);
+                    writer.text().append(new String(content, StandardCharsets.UTF_8));
                 }
 
                 DocPrintJob job = printService.createPrintJob();
 
-                // 检查打印机名称，如果是PDF打印机，则使用不同的打印方式
-                if (printService.getName().toLowerCase().contains("pdf")) {
+                // 不接收ESC/POS指令的打印机（如PDF打印机）使用驱动打印
+                if (!profile.isEscPos()) {
                     log.info("检测到PDF打印机，使用Printable接口进行打印");
                     // 为PDF打印机创建可打印内容
-                    Printable printable = createPrintableForPdf(formattedContent);
+                    Printable printable = createPrintableForPdf(writer.toString());
                     Doc pdfDoc = new SimpleDoc(printable, DocFlavor.SERVICE_FORMATTED.PRINTABLE, null);
                     job.print(pdfDoc, null);
                 } else {
                     log.info("使用物理打印机（ESC/POS）模式进行打印");
-                    // 原始的物理打印机逻辑
-                    // 1. 首先打印文本内容
-                    Doc doc = new SimpleDoc(formattedContent.getBytes("GBK"),
-                            DocFlavor.BYTE_ARRAY.AUTOSENSE,
-                            null);
-
+                    // 文本、二维码说明和二维码合并为一个文档发送
+                    appendQrCodeFooter(writer, profile);
+                    writer.cut();
 
-                    // 执行打印
+                    byte[] data = writer.toByteArray();
+                    Doc doc = new SimpleDoc(data, DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
                     job.print(doc, null);
-
-
-                    // 2. 然后打印二维码图片
-                    try {
-                        org.springframework.core.io.Resource resource;
-                        if (qrcodePath.startsWith("classpath:")) {
-                            resource = resourceLoader.getResource(qrcodePath);
-                        } else {
-                            resource = resourceLoader.getResource("file:" + qrcodePath);
-                        }
-
-                        if (resource.exists()) {
-                            log.info("二维码文件存在: {}", resource);
-                            BufferedImage qrImage = ImageIO.read(resource.getInputStream());
-
-                            //先打印对二维码的说明文字
-                            StringBuilder imageDesc = new StringBuilder();
-                            final String ESC = "\u001B";
-                            final String ALIGN_CENTER = ESC + "a" + (char) 0x01;
-                            final String NORMAL_SIZE = ESC + "!" + (char) 0x00;
-
-
-                            imageDesc.append(ALIGN_CENTER)
-                                    .append(NORMAL_SIZE)
-                                    .append("扫描下方二维码，关注我们的小程序\n\n");
-
-
-                            Doc desDoc = new SimpleDoc(imageDesc.toString().getBytes("GBK"), DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
-                            job.print(desDoc, null);
-
-                            //打印图片
-                            DocFlavor flavor = DocFlavor.SERVICE_FORMATTED.RENDERABLE_IMAGE;
-                            Doc imageDoc = new SimpleDoc(qrImage, flavor, null);
-                            job.print(imageDoc, null);
-
-                            // 最后添加几行空白并切纸
-                            Doc footerDoc = new SimpleDoc("\n\n\n\n\n".getBytes("GBK"),
-                                    DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
-                            job.print(footerDoc, null);
-
-                        }
-                    } catch (Exception e) {
-                        log.error("打印二维码失败", e);
-                    }
+                    log.info("ESC/POS数据已发送: {}, 字节数: {}", task.getTaskId(), data.length);
                 }
 
                 // 更新任务状态
@@ -249,6 +233,35 @@ public class UnifiedPrintService {
     }
 
 
+    // 执行PDF打印任务
+    private PrintResult executePdfPrint(PrintTask task) {
+        try {
+            if (!isPrinterReady(task.getPrinterName())) {
+                throw new PrinterNotAvailableException("打印机未就绪: " + task.getPrinterName());
+            }
+
+            PrintService printService = getPrinterByName(task.getPrinterName());
+            if (printService == null) {
+                throw new PrinterNotAvailableException("找不到可用的打印机");
+            }
+
+            pdfPrintService.print(task, printService);
+
+            // 更新任务状态
+            task.setStatus(PrintTaskStatus.COMPLETED);
+            printTaskPersistence.markTaskAsCompleted(task);
+            printMetrics.recordSuccess();
+
+            return new PrintResult(true, "PDF打印成功");
+        } catch (Exception e) {
+            task.setStatus(PrintTaskStatus.FAILED);
+            printMetrics.recordFailure();
+            log.error("PDF打印失败: {}", task.getTaskId(), e);
+            return new PrintResult(false, "PDF打印失败: " + e.getMessage());
+        }
+    }
+
+
     // 检查打印机状态
     public boolean isPrinterReady(String printerName) {
         try {
@@ -288,17 +301,53 @@ public class UnifiedPrintService {
         }
     }
 
+    // 按打印机能力创建小票输出，并登记可引用的图片
+    private ReceiptWriter createReceiptWriter(PrintService printService, PrinterProfile profile) {
+        ReceiptWriter writer = ReceiptWriter.forProfile(profile);
+        printerAssetService.bindImages(writer, printService, profile);
+        return writer;
+    }
+
+    // 追加小程序二维码：配置了二维码内容时使用原生指令，否则打印二维码图片（NV位图或光栅位图）
+    private void appendQrCodeFooter(ReceiptWriter writer, PrinterProfile profile) {
+        boolean useNative = profile.isNativeQrCode() && qrcodeContent != null && !qrcodeContent.isEmpty();
+        if (!useNative && !writer.hasImage(PrinterAssetService.ASSET_QRCODE)) {
+            return;
+        }
+
+        final String ESC = "\u001B";
+        final String ALIGN_CENTER = ESC + "a" + (char) 0x01;
+        final String NORMAL_SIZE = ESC + "!" + (char) 0x00;
+
+        //先打印对二维码的说明文字
+        writer.text()
+                .append(ALIGN_CENTER)
+                .append(NORMAL_SIZE)
+                .append("扫描下方二维码，关注我们的小程序\n\n");
+
+        if (useNative) {
+            writer.qrCode(qrcodeContent);
+        } else {
+            writer.image(PrinterAssetService.ASSET_QRCODE);
+        }
+
+        // 最后添加几行空白
+        writer.text().append("\n\n\n\n\n");
+    }
+
     // 格式化打印内容
-    private String formatPrintContent(JSONObject data) {
+    private void formatPrintContent(JSONObject data, ReceiptWriter writer) {
 
 
         // 判断是否为退货单
         if ("refund".equals(data.getString("type"))) {
-            return formatRefundPrintContent(data);
+            formatRefundPrintContent(data, writer);
+            return;
         }
 
 
-        StringBuilder content = new StringBuilder();
+        StringBuilder content = writer.text();
+        ReceiptLayout layout = writer.getLayout();
 
         // ESC/POS 指令常量
         final String ESC = "\u001B";
@@ -317,7 +366,7 @@ public class UnifiedPrintService {
         final String ALIGN_CENTER = ESC + "a" + (char) 0x01;   // 居中对齐
         final String ALIGN_RIGHT = ESC + "a" + (char) 0x02;    // 右对齐
         // 分隔线
-        final String DIVIDER = "--------------------------------\n";
+        final String DIVIDER = layout.divider();
 
         // 获取商品数组，兼容旧版本数据格式
         JSONArray goodsItems;
@@ -345,7 +394,8 @@ public class UnifiedPrintService {
         for (int i = 0; i < 2; i++) {
             boolean isMerchantCopy = (i == 0); // 第一份是商家联，第二份是用户联
 
-            // 1. 标题 - 指尖赤壁（居中，大字体）
+            // 1. 标题 - logo（已登记时）和指尖赤壁（居中，大字体）
+            writer.image(PrinterAssetService.ASSET_LOGO);
             content.append(ALIGN_CENTER)
                     .append(DOUBLE_SIZE)
                     .append("指尖赤壁\n")
@@ -357,8 +407,8 @@ public class UnifiedPrintService {
             // 修改：使用新增的 bill_type 字段，而不是固定的判断逻辑
             String billType = data.containsKey("bill_type") ? data.getString("bill_type") : "配送单";
             content.append(ALIGN_CENTER)
-                    .append(LARGE_SIZE)
-                    .append(String.format("%-20s%s", isMerchantCopy ? "商家联" : "用户联", billType))
+                    .append(LARGE_SIZE);
+            layout.appendTwoColumns(content, isMerchantCopy ? "商家联" : "用户联", billType)
                     .append("\n");
 
             // 3. 商家名称（居中）
@@ -377,8 +427,8 @@ public class UnifiedPrintService {
 
             // 5. 商品列表头部
             content.append(ALIGN_LEFT)
-                    .append(SMALL_SIZE)
-                    .append(formatTableRow("商品", "数量", "单价", "小计"))
+                    .append(SMALL_SIZE);
+            layout.appendTableRow(content, "商品", "数量", "单价", "小计")
                     .append("\n");
 
 
@@ -393,11 +443,10 @@ public class UnifiedPrintService {
                 double subtotal = item.containsKey("sell_subtotal") ? item.getDoubleValue("sell_subtotal") : 0;
                 totalAmount += subtotal;
 
-                // 商品名称单独一行，不再截断
+                // 商品名称单独一行，超长时按纸宽自动换行
                 content.append(ALIGN_LEFT)
-                        .append(NORMAL_SIZE)  // 恢复正常字体显示商品名
-                        .append(goodsName)
-                        .append("\n");
+                        .append(NORMAL_SIZE);  // 恢复正常字体显示商品名
+                layout.appendWrapped(content, goodsName);
 
                 // 新增：如果是餐饮商品，显示规格信息
                 boolean isFood = item.getBooleanValue("is_food", false);
@@ -413,16 +462,16 @@ public class UnifiedPrintService {
 
                 // 商品详细信息行，使用专门的对齐方法
                 content.append(ALIGN_LEFT)
-                        .append(SMALL_SIZE)  // 使用与表头相同的小号字体
-                        .append(formatTableRow(goodsCode, String.valueOf(qty), String.valueOf(price), String.valueOf(subtotal)))
+                        .append(SMALL_SIZE);  // 使用与表头相同的小号字体
+                layout.appendTableRow(content, goodsCode, String.valueOf(qty), String.valueOf(price), String.valueOf(subtotal))
                         .append("\n");
             }
 
 
             // 6. 原价和数量
-            content.append(ALIGN_LEFT)
-                    .append(String.format("%-20s%s", "总计: ￥" + String.format("%.2f", data.containsKey("goods_price") ? data.getDoubleValue("goods_price") : 0),
-                            "总数: " + totalQty))
+            content.append(ALIGN_LEFT);
+            layout.appendTwoColumns(content, "总计: ￥" + String.format("%.2f", data.containsKey("goods_price") ? data.getDoubleValue("goods_price") : 0),
+                            "总数: " + totalQty)
                     .append("\n");
 
 
@@ -446,9 +495,9 @@ public class UnifiedPrintService {
                     .append("\n");
 
             // 8. 应收，实付金额
-            content.append(ALIGN_LEFT)
-                    .append(String.format("%-20s%s", "应收: ￥" + (data.containsKey("all_money") ? data.getDoubleValue("all_money") : 0),
-                            "实收: ￥" + (data.containsKey("pay_money") ? data.getDoubleValue("pay_money") : 0)))
+            content.append(ALIGN_LEFT);
+            layout.appendTwoColumns(content, "应收: ￥" + (data.containsKey("all_money") ? data.getDoubleValue("all_money") : 0),
+                            "实收: ￥" + (data.containsKey("pay_money") ? data.getDoubleValue("pay_money") : 0))
                     .append("\n")
                     .append(DIVIDER);
 
@@ -523,6 +572,14 @@ public class UnifiedPrintService {
             }
 
 
+            // 订单条码和二维码，优先使用打印机原生指令
+            if (data.containsKey("barcode")) {
+                writer.barcode(data.getString("barcode"));
+            }
+            if (data.containsKey("qr_code")) {
+                writer.qrCode(data.getString("qr_code"));
+            }
+
             // 添加打印时间
             content.append("打印时间: ")
                     .append(getCurrentTime())
@@ -532,20 +589,20 @@ public class UnifiedPrintService {
             // 添加切纸或足够的空行以便手撕
             if (i == 0) { // 第一联结束，添加更多空行作为两联之间的间隔
                 content.append("\n\n\n\n\n");
+                writer.cut();
             } else {
                 content.append("\n\n");
             }
         }
-
-        return content.toString();
     }
 
 
     /**
      * 格式化退货单打印内容
      */
-    private String formatRefundPrintContent(JSONObject data) {
-        StringBuilder content = new StringBuilder();
+    private void formatRefundPrintContent(JSONObject data, ReceiptWriter writer) {
+        StringBuilder content = writer.text();
+        ReceiptLayout layout = writer.getLayout();
 
         // ESC/POS 指令常量
         final String ESC = "\u001B";
@@ -557,7 +614,7 @@ public class UnifiedPrintService {
         final String ALIGN_LEFT = ESC + "a" + (char) 0x00;
         final String ALIGN_CENTER = ESC + "a" + (char) 0x01;
         final String ALIGN_RIGHT = ESC + "a" + (char) 0x02;
-        final String DIVIDER = "--------------------------------\n";
+        final String DIVIDER = layout.divider();
 
         // 获取退货商品数组
         JSONArray goodsItems = data.getJSONArray("goodsItems");
@@ -602,8 +659,8 @@ public class UnifiedPrintService {
         content.append(ALIGN_LEFT)
                 .append(NORMAL_SIZE)
                 .append("退货商品明细:\n")
-                .append(SMALL_SIZE)
-                .append(formatTableRow("商品", "编码", "数量", "退款"))
+                .append(SMALL_SIZE);
+        layout.appendTableRow(content, "商品", "编码", "数量", "退款")
                 .append("\n");
 
         // 退货商品明细
@@ -618,9 +675,8 @@ public class UnifiedPrintService {
 
             // 商品名称单独一行
             content.append(ALIGN_LEFT)
-                    .append(NORMAL_SIZE)
-                    .append(goodsName)
-                    .append("\n");
+                    .append(NORMAL_SIZE);
+            layout.appendWrapped(content, goodsName);
 
             // 如果是餐饮商品，显示规格
             boolean isFood = item.getBooleanValue("is_food", false);
@@ -636,13 +692,12 @@ public class UnifiedPrintService {
 
             // 商品详细信息行（数量和金额显示负数）
             content.append(ALIGN_LEFT)
-                    .append(SMALL_SIZE)
-                    .append(formatTableRow(
+                    .append(SMALL_SIZE);
+            layout.appendTableRow(content,
                             goodsCode,
                             "",
                             String.valueOf(qty),
-                            String.format("%.2f", refundMoney)
-                    ))
+                            String.format("%.2f", refundMoney))
                     .append("\n");
         }
 
@@ -679,13 +734,16 @@ public class UnifiedPrintService {
                 .append("3. 如有问题请联系客服\n")
                 .append(DIVIDER);
 
-        // 9. 打印时间
+        // 9. 原订单条码
+        if (data.containsKey("barcode")) {
+            writer.barcode(data.getString("barcode"));
+        }
+
+        // 10. 打印时间
         content.append(NORMAL_SIZE)
                 .append("打印时间: ")
                 .append(getCurrentTime())
                 .append("\n\n\n\n\n");
-
-        return content.toString();
     }
 
     // 获取当前时间
@@ -693,54 +751,6 @@ public class UnifiedPrintService {
         return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
-    // 计算字符串在热敏打印机上的显示宽度（中文字符占2个单位，英文字符占1个单位）
-    private int getDisplayWidth(String str) {
-        if (str == null) return 0;
-        int width = 0;
-        for (char c : str.toCharArray()) {
-            if (c >= 0x4E00 && c <= 0x9FFF) { // 中文字符范围
-                width += 2;
-            } else {
-                width += 1;
-            }
-        }
-        return width;
-    }
-
-    // 格式化表格行，确保列对齐
-    private String formatTableRow(String col1, String col2, String col3, String col4) {
-        // 定义每列的显示宽度（以英文字符为单位）
-        int[] columnWidths = {12, 4, 6, 6}; // "商品", "数量", "单价", "小计"
-
-        StringBuilder row = new StringBuilder();
-        String[] columns = {col1, col2, col3, col4};
-
-        for (int i = 0; i < columns.length; i++) {
-            String column = columns[i] != null ? columns[i] : "";
-            int currentWidth = getDisplayWidth(column);
-            int targetWidth = columnWidths[i];
-
-            // 添加列内容
-            row.append(column);
-
-            // 添加空格来达到目标宽度
-            int spacesToAdd = targetWidth - currentWidth;
-            if (spacesToAdd > 0) {
-                for (int j = 0; j < spacesToAdd; j++) {
-                    row.append(" ");
-                }
-            }
-
-            // 列之间添加一个空格分隔
-            if (i < columns.length - 1) {
-                row.append(" ");
-            }
-        }
-
-        return row.toString();
-    }
-
-
     // 打印结果类
     public static class PrintResult {
         private final boolean success;
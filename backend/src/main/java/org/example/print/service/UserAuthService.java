@@ -7,7 +7,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -20,13 +24,16 @@ public class UserAuthService {
     @Value("${remote.server.url:http://localhost:9090}")
     private String serverUrl;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
 
     // 存储当前登录的用户信息
     private String userId;
     private String username;
     private String merchantId;
     private String storeId;
+    // 账号可以打印的所有门店，中央厨房等账号会有多个
+    private List<String> storeIds = Collections.emptyList();
 
     /**
      * 用户登录
@@ -55,9 +62,10 @@ public class UserAuthService {
                 this.username = result.get("username").toString();
                 this.merchantId = result.get("merchantId").toString();
                 this.storeId = result.get("storeId").toString();
+                this.storeIds = readStoreIds(result.get("storeIds"));
 
                 // 更新远程数据服务的用户信息
-                remoteDataService.setUserInfo(this.userId, this.username, this.merchantId ,this.storeId);
+                remoteDataService.setUserInfo(this.userId, this.username, this.merchantId ,this.storeId, this.storeIds);
 
                 log.info("用户登录成功: {}, 商户ID: {}", this.username, this.merchantId);
 
@@ -76,6 +84,27 @@ public class UserAuthService {
         return storeId;
     }
 
+    /**
+     * 获取当前账号可以打印的所有门店
+     */
+    public List<String> getCurrentStoreIds() {
+        return storeIds;
+    }
+
+    // 登录结果中的门店列表，服务器未返回时为空
+    private static List<String> readStoreIds(Object value) {
+        if (!(value instanceof Collection)) {
+            return Collections.emptyList();
+        }
+        List<String> ids = new ArrayList<>();
+        for (Object id : (Collection<?>) value) {
+            if (id != null) {
+                ids.add(id.toString());
+            }
+        }
+        return ids;
+    }
+
 
     /**
      * 检查是否已登录
@@ -106,8 +135,9 @@ public class UserAuthService {
         this.username = null;
         this.merchantId = null;
         this.storeId = null;
+        this.storeIds = Collections.emptyList();
         // 清除远程数据服务的用户信息
-        remoteDataService.setUserInfo(null, null, null, null);
+        remoteDataService.setUserInfo(null, null, null, null, null);
 
         log.info("用户已登出");
     }
@@ -0,0 +1,209 @@
+package org.example.print.simulator;
+
+import org.example.print.render.EscPosCommands;
+
+import javax.print.Doc;
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintException;
+import javax.print.PrintService;
+import javax.print.attribute.HashPrintJobAttributeSet;
+import javax.print.attribute.PrintJobAttributeSet;
+import javax.print.attribute.PrintRequestAttributeSet;
+import javax.print.event.PrintJobAttributeListener;
+import javax.print.event.PrintJobEvent;
+import javax.print.event.PrintJobListener;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 模拟打印任务
+ * 原始字节流直接交给模拟打印机；Printable/Pageable按驱动的方式渲染为光栅位图，
+ * 以位图指令的字节数计入传输量
+ */
+class VirtualDocPrintJob implements DocPrintJob {
+
+    // 驱动渲染分辨率，与58/80mm热敏打印机一致
+    private static final double DOTS_PER_INCH = 203;
+
+    // 单个文档最多渲染的页数
+    private static final int MAX_PAGES = 500;
+
+    private final VirtualPrintService printService;
+    private final List<PrintJobListener> listeners = new CopyOnWriteArrayList<>();
+
+    VirtualDocPrintJob(VirtualPrintService printService) {
+        this.printService = printService;
+    }
+
+    @Override
+    public PrintService getPrintService() {
+        return printService;
+    }
+
+    @Override
+    public PrintJobAttributeSet getAttributes() {
+        return new HashPrintJobAttributeSet();
+    }
+
+    @Override
+    public void addPrintJobListener(PrintJobListener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removePrintJobListener(PrintJobListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void addPrintJobAttributeListener(PrintJobAttributeListener listener, PrintJobAttributeSet attributes) {
+        // 任务属性不会变化
+    }
+
+    @Override
+    public void removePrintJobAttributeListener(PrintJobAttributeListener listener) {
+    }
+
+    @Override
+    public void print(Doc doc, PrintRequestAttributeSet attributes) throws PrintException {
+        if (!printService.isDocFlavorSupported(doc.getDocFlavor())) {
+            throw new PrintException("模拟打印机不支持的文档格式: " + doc.getDocFlavor());
+        }
+
+        try {
+            printService.execute(readDocument(doc));
+        } catch (PrintException e) {
+            fireEvent(PrintJobEvent.JOB_FAILED);
+            throw e;
+        }
+        fireEvent(PrintJobEvent.DATA_TRANSFER_COMPLETE);
+        fireEvent(PrintJobEvent.JOB_COMPLETE);
+        fireEvent(PrintJobEvent.NO_MORE_EVENTS);
+    }
+
+    private byte[] readDocument(Doc doc) throws PrintException {
+        DocFlavor flavor = doc.getDocFlavor();
+        try {
+            if (DocFlavor.SERVICE_FORMATTED.PRINTABLE.equals(flavor)) {
+                return renderPrintable((Printable) doc.getPrintData(), new PageFormat());
+            }
+            if (DocFlavor.SERVICE_FORMATTED.PAGEABLE.equals(flavor)) {
+                return renderPageable((Pageable) doc.getPrintData());
+            }
+            if (DocFlavor.BYTE_ARRAY.AUTOSENSE.equals(flavor)) {
+                return (byte[]) doc.getPrintData();
+            }
+            return readStream(doc.getStreamForBytes());
+        } catch (IOException | PrinterException e) {
+            throw new PrintException("读取打印文档失败: " + e.getMessage());
+        }
+    }
+
+    private byte[] renderPrintable(Printable printable, PageFormat pageFormat) throws PrinterException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int pageIndex = 0; pageIndex < MAX_PAGES; pageIndex++) {
+            BufferedImage page = createPage(pageFormat);
+            Graphics2D g = page.createGraphics();
+            try {
+                prepare(g, page);
+                if (printable.print(g, pageFormat, pageIndex) != Printable.PAGE_EXISTS) {
+                    break;
+                }
+            } finally {
+                g.dispose();
+            }
+            writePage(out, page);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] renderPageable(Pageable pageable) throws PrinterException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int pages = pageable.getNumberOfPages();
+        if (pages == Pageable.UNKNOWN_NUMBER_OF_PAGES) {
+            pages = MAX_PAGES;
+        }
+        for (int pageIndex = 0; pageIndex < Math.min(pages, MAX_PAGES); pageIndex++) {
+            PageFormat pageFormat = pageable.getPageFormat(pageIndex);
+            BufferedImage page = createPage(pageFormat);
+            Graphics2D g = page.createGraphics();
+            try {
+                prepare(g, page);
+                if (pageable.getPrintable(pageIndex).print(g, pageFormat, pageIndex) != Printable.PAGE_EXISTS) {
+                    break;
+                }
+            } finally {
+                g.dispose();
+            }
+            writePage(out, page);
+        }
+        return out.toByteArray();
+    }
+
+    private static BufferedImage createPage(PageFormat pageFormat) {
+        double scale = DOTS_PER_INCH / 72;
+        int width = Math.max(1, (int) Math.ceil(pageFormat.getWidth() * scale));
+        int height = Math.max(1, (int) Math.ceil(pageFormat.getHeight() * scale));
+        return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+    }
+
+    private static void prepare(Graphics2D g, BufferedImage page) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, page.getWidth(), page.getHeight());
+        g.setColor(Color.BLACK);
+        g.scale(DOTS_PER_INCH / 72, DOTS_PER_INCH / 72);
+    }
+
+    private static void writePage(ByteArrayOutputStream out, BufferedImage page) {
+        byte[] raster = EscPosCommands.rasterImage(page, page.getWidth());
+        out.write(raster, 0, raster.length);
+    }
+
+    private static byte[] readStream(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private void fireEvent(int reason) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        PrintJobEvent event = new PrintJobEvent(this, reason);
+        for (PrintJobListener listener : listeners) {
+            switch (reason) {
+                case PrintJobEvent.DATA_TRANSFER_COMPLETE:
+                    listener.printDataTransferCompleted(event);
+                    break;
+                case PrintJobEvent.JOB_COMPLETE:
+                    listener.printJobCompleted(event);
+                    break;
+                case PrintJobEvent.JOB_FAILED:
+                    listener.printJobFailed(event);
+                    break;
+                default:
+                    listener.printJobNoMoreEvents(event);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package org.example.print.simulator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.print.config.PrinterSimulatorProperties;
+
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintException;
+import javax.print.PrintService;
+import javax.print.ServiceUIFactory;
+import javax.print.attribute.Attribute;
+import javax.print.attribute.AttributeSet;
+import javax.print.attribute.HashPrintServiceAttributeSet;
+import javax.print.attribute.PrintServiceAttribute;
+import javax.print.attribute.PrintServiceAttributeSet;
+import javax.print.attribute.standard.PrinterInfo;
+import javax.print.attribute.standard.PrinterIsAcceptingJobs;
+import javax.print.attribute.standard.PrinterName;
+import javax.print.attribute.standard.PrinterState;
+import javax.print.attribute.standard.PrinterStateReason;
+import javax.print.attribute.standard.PrinterStateReasons;
+import javax.print.attribute.standard.QueuedJobCount;
+import javax.print.attribute.standard.Severity;
+import javax.print.event.PrintServiceAttributeListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模拟打印机
+ * 实现javax.print的PrintService，注册后与真实打印机一样可以按名称查找。
+ * 按配置的传输速率和延迟分布占用打印时间，按概率注入打印失败、缺纸和离线，
+ * 故障状态通过PrinterState/PrinterStateReasons反映，可在没有打印机的机器上压测队列和重试
+ */
+@Slf4j
+public class VirtualPrintService implements PrintService {
+
+    private static final DocFlavor[] SUPPORTED_FLAVORS = {
+            DocFlavor.BYTE_ARRAY.AUTOSENSE,
+            DocFlavor.INPUT_STREAM.AUTOSENSE,
+            DocFlavor.SERVICE_FORMATTED.PRINTABLE,
+            DocFlavor.SERVICE_FORMATTED.PAGEABLE
+    };
+
+    private final PrinterSimulatorProperties properties;
+
+    // 打印机同一时间只处理一个任务，其余任务排队等待
+    private final Object printLock = new Object();
+
+    private volatile VirtualPrinterState state = VirtualPrinterState.IDLE;
+    private volatile long faultTime;
+
+    private final AtomicInteger queuedJobs = new AtomicInteger();
+    private final AtomicLong jobSequence = new AtomicLong();
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+    private final AtomicLong bytesPrinted = new AtomicLong();
+    private final AtomicLong busyMillis = new AtomicLong();
+
+    public VirtualPrintService(PrinterSimulatorProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 获取当前状态，故障持续超过恢复时间后自动恢复为空闲
+     */
+    public VirtualPrinterState getState() {
+        VirtualPrinterState current = state;
+        long recoverAfter = properties.getRecoverAfterMs();
+        if (current.isFault() && recoverAfter > 0 && System.currentTimeMillis() - faultTime >= recoverAfter) {
+            synchronized (this) {
+                if (state == current) {
+                    state = VirtualPrinterState.IDLE;
+                    log.info("模拟打印机已从{}状态恢复: {}", current.getDescription(), getName());
+                }
+            }
+            return state;
+        }
+        return current;
+    }
+
+    /**
+     * 手动设置状态，用于模拟装纸、重新连接或人为制造故障
+     */
+    public synchronized void setState(VirtualPrinterState newState) {
+        if (newState == VirtualPrinterState.PRINTING) {
+            throw new IllegalArgumentException("不能手动设置为打印中状态");
+        }
+        if (newState.isFault()) {
+            faultTime = System.currentTimeMillis();
+        }
+        state = newState;
+        log.info("模拟打印机状态已设置为{}: {}", newState.getDescription(), getName());
+    }
+
+    /**
+     * 获取运行统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("name", getName());
+        statistics.put("state", getState());
+        statistics.put("queuedJobs", queuedJobs.get());
+        statistics.put("completedJobs", completedJobs.get());
+        statistics.put("failedJobs", failedJobs.get());
+        statistics.put("bytesPrinted", bytesPrinted.get());
+        statistics.put("busyMillis", busyMillis.get());
+        return statistics;
+    }
+
+    /**
+     * 执行一个打印任务：排队、按速率和延迟占用打印时间、注入故障并记录输出字节
+     * 离线在传输过程中发生，当前任务失败；缺纸在任务打印完后发生，影响后续任务
+     */
+    void execute(byte[] data) throws PrintException {
+        queuedJobs.incrementAndGet();
+        synchronized (printLock) {
+            queuedJobs.decrementAndGet();
+            VirtualPrinterState current = startJob();
+            if (current.isFault()) {
+                failedJobs.incrementAndGet();
+                throw new PrintException("模拟打印机" + current.getDescription() + ": " + getName());
+            }
+
+            long sequence = jobSequence.incrementAndGet();
+            long start = System.currentTimeMillis();
+            try {
+                Thread.sleep(sampleDuration(data.length));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finishJob();
+                failedJobs.incrementAndGet();
+                throw new PrintException("模拟打印被中断: " + getName());
+            } finally {
+                busyMillis.addAndGet(System.currentTimeMillis() - start);
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < properties.getOfflineRate()) {
+                enterFault(VirtualPrinterState.OFFLINE);
+                failedJobs.incrementAndGet();
+                throw new PrintException("模拟打印机传输中断开连接: " + getName());
+            }
+            if (random.nextDouble() < properties.getErrorRate()) {
+                finishJob();
+                failedJobs.incrementAndGet();
+                throw new PrintException("模拟打印失败: " + getName() + ", 任务序号: " + sequence);
+            }
+
+            record(sequence, data);
+            bytesPrinted.addAndGet(data.length);
+            completedJobs.incrementAndGet();
+
+            if (random.nextDouble() < properties.getPaperOutRate()) {
+                enterFault(VirtualPrinterState.PAPER_OUT);
+            } else {
+                finishJob();
+            }
+            log.debug("模拟打印完成: {}, 任务序号: {}, 字节数: {}", getName(), sequence, data.length);
+        }
+    }
+
+    /**
+     * 打印耗时 = 固定延迟 + 正态分布抖动 + 数据量 / 传输速率
+     */
+    private long sampleDuration(int bytes) {
+        double latency = properties.getLatencyMs()
+                + ThreadLocalRandom.current().nextGaussian() * properties.getLatencyJitterMs();
+        long duration = Math.max(0, Math.round(latency));
+        if (properties.getBytesPerSecond() > 0) {
+            duration += bytes * 1000L / properties.getBytesPerSecond();
+        }
+        return duration;
+    }
+
+    // 没有故障时进入打印中状态，返回进入前的状态
+    private synchronized VirtualPrinterState startJob() {
+        VirtualPrinterState current = getState();
+        if (!current.isFault()) {
+            state = VirtualPrinterState.PRINTING;
+        }
+        return current;
+    }
+
+    // 打印期间被手动设置的状态保持不变
+    private synchronized void finishJob() {
+        if (state == VirtualPrinterState.PRINTING) {
+            state = VirtualPrinterState.IDLE;
+        }
+    }
+
+    private synchronized void enterFault(VirtualPrinterState faultState) {
+        faultTime = System.currentTimeMillis();
+        state = faultState;
+        log.warn("模拟打印机进入{}状态: {}", faultState.getDescription(), getName());
+    }
+
+    private void record(long sequence, byte[] data) {
+        String recordDir = properties.getRecordDir();
+        if (recordDir == null || recordDir.isEmpty()) {
+            return;
+        }
+        File dir = new File(recordDir);
+        dir.mkdirs();
+        File file = new File(dir, String.format("job_%06d.bin", sequence));
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        } catch (IOException e) {
+            log.error("保存模拟打印输出失败: {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return properties.getName();
+    }
+
+    @Override
+    public DocPrintJob createPrintJob() {
+        return new VirtualDocPrintJob(this);
+    }
+
+    @Override
+    public void addPrintServiceAttributeListener(PrintServiceAttributeListener listener) {
+        // 状态由调用方轮询获取，不推送属性变更
+    }
+
+    @Override
+    public void removePrintServiceAttributeListener(PrintServiceAttributeListener listener) {
+    }
+
+    @Override
+    public PrintServiceAttributeSet getAttributes() {
+        VirtualPrinterState current = getState();
+        PrintServiceAttributeSet attributes = new HashPrintServiceAttributeSet();
+        attributes.add(new PrinterName(getName(), null));
+        attributes.add(new PrinterInfo("模拟打印机", null));
+        attributes.add(toPrinterState(current));
+        attributes.add(current.isFault()
+                ? PrinterIsAcceptingJobs.NOT_ACCEPTING_JOBS
+                : PrinterIsAcceptingJobs.ACCEPTING_JOBS);
+        attributes.add(new QueuedJobCount(queuedJobs.get()));
+        PrinterStateReasons reasons = toStateReasons(current);
+        if (!reasons.isEmpty()) {
+            attributes.add(reasons);
+        }
+        return attributes;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends PrintServiceAttribute> T getAttribute(Class<T> category) {
+        if (category == null) {
+            throw new NullPointerException("category");
+        }
+        return (T) getAttributes().get(category);
+    }
+
+    @Override
+    public DocFlavor[] getSupportedDocFlavors() {
+        return SUPPORTED_FLAVORS.clone();
+    }
+
+    @Override
+    public boolean isDocFlavorSupported(DocFlavor flavor) {
+        return Arrays.asList(SUPPORTED_FLAVORS).contains(flavor);
+    }
+
+    @Override
+    public Class<?>[] getSupportedAttributeCategories() {
+        return new Class<?>[0];
+    }
+
+    @Override
+    public boolean isAttributeCategorySupported(Class<? extends Attribute> category) {
+        return false;
+    }
+
+    @Override
+    public Object getDefaultAttributeValue(Class<? extends Attribute> category) {
+        return null;
+    }
+
+    @Override
+    public Object getSupportedAttributeValues(Class<? extends Attribute> category, DocFlavor flavor,
+                                              AttributeSet attributes) {
+        return null;
+    }
+
+    @Override
+    public boolean isAttributeValueSupported(Attribute attrval, DocFlavor flavor, AttributeSet attributes) {
+        return false;
+    }
+
+    @Override
+    public AttributeSet getUnsupportedAttributes(DocFlavor flavor, AttributeSet attributes) {
+        // 忽略所有请求属性
+        return null;
+    }
+
+    @Override
+    public ServiceUIFactory getServiceUIFactory() {
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof VirtualPrintService && ((VirtualPrintService) obj).getName().equals(getName());
+    }
+
+    @Override
+    public int hashCode() {
+        return getName().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "模拟打印机: " + getName();
+    }
+
+    private static PrinterState toPrinterState(VirtualPrinterState state) {
+        switch (state) {
+            case PRINTING:
+                return PrinterState.PROCESSING;
+            case PAPER_OUT:
+            case OFFLINE:
+                return PrinterState.STOPPED;
+            default:
+                return PrinterState.IDLE;
+        }
+    }
+
+    private static PrinterStateReasons toStateReasons(VirtualPrinterState state) {
+        PrinterStateReasons reasons = new PrinterStateReasons();
+        if (state == VirtualPrinterState.PAPER_OUT) {
+            reasons.put(PrinterStateReason.MEDIA_EMPTY, Severity.ERROR);
+        } else if (state == VirtualPrinterState.OFFLINE) {
+            reasons.put(PrinterStateReason.SHUTDOWN, Severity.ERROR);
+        }
+        return reasons;
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.print.simulator;
+
+/**
+ * 模拟打印机状态
+ */
+public enum VirtualPrinterState {
+    IDLE("空闲"),
+    PRINTING("打印中"),
+    PAPER_OUT("缺纸"),
+    OFFLINE("离线");
+
+    private final String description;
+
+    VirtualPrinterState(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 是否为需要恢复的故障状态
+     */
+    public boolean isFault() {
+        return this == PAPER_OUT || this == OFFLINE;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.print.component;
+
+import org.example.print.bean.PrintTask;
+import org.example.print.config.JacksonConfig;
+import org.example.print.config.MultiStoreProperties;
+import org.example.print.service.PrintTaskNotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class PrintQueueManagerTest {
+
+    @TempDir
+    File dataDir;
+
+    private PrintQueue printQueue;
+    private PrintTaskPersistence persistence;
+    private PrintQueueManager manager;
+
+    @BeforeEach
+    void setUp() {
+        persistence = new PrintTaskPersistence(new JacksonConfig().objectMapper(), new PendingTaskIndex());
+        ReflectionTestUtils.setField(persistence, "baseDir", dataDir.getPath());
+        ReflectionTestUtils.setField(persistence, "segmentSize", 1024 * 1024L);
+        ReflectionTestUtils.setField(persistence, "fsync", false);
+        ReflectionTestUtils.setField(persistence, "stateSlots", 64);
+        ReflectionTestUtils.setField(persistence, "format", "binary");
+        ReflectionTestUtils.setField(persistence, "recoveryBatchSize", 64);
+        ReflectionTestUtils.setField(persistence, "writeBehind", false);
+        ReflectionTestUtils.setField(persistence, "retentionDays", 7);
+        persistence.init();
+
+        MultiStoreProperties storeProperties = new MultiStoreProperties();
+        printQueue = new PrintQueue(storeProperties);
+        manager = new PrintQueueManager(printQueue, null, null, persistence, new PrintMetrics(),
+                mock(PrintTaskNotificationService.class), storeProperties);
+        ReflectionTestUtils.setField(manager, "offerTimeout", 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.destroy();
+        persistence.destroy();
+    }
+
+    @Test
+    void ignoresTaskAlreadyReceived() {
+        assertTrue(manager.addPrintTask(task("T1")));
+
+        assertFalse(manager.addPrintTask(task("T1")));
+        assertEquals(1, printQueue.size());
+    }
+
+    @Test
+    void requeuesTaskRejectedByFullQueue() throws InterruptedException {
+        while (printQueue.size() < 1000) {
+            printQueue.put(task("F" + printQueue.size()));
+        }
+        assertThrows(PrintQueueManager.PrintQueueFullException.class, () -> manager.addPrintTask(task("T1")));
+
+        // 队列有空位后服务器重新下发同一任务
+        printQueue.poll();
+        assertTrue(manager.addPrintTask(task("T1")));
+        assertEquals(1000, printQueue.size());
+
+        // 已经入队，之后的重复下发照常忽略
+        printQueue.poll();
+        assertFalse(manager.addPrintTask(task("T1")));
+        assertEquals(999, printQueue.size());
+    }
+
+    private static PrintTask task(String taskId) {
+        PrintTask task = PrintTask.builder().taskId(taskId).build();
+        task.setContent("小票内容");
+        return task;
+    }
+}
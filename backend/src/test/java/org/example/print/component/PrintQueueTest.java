@@ -0,0 +1,128 @@
+package org.example.print.component;
+
+import org.example.print.bean.PrintTask;
+import org.example.print.config.MultiStoreProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrintQueueTest {
+
+    @Test
+    void singleStoreIsFifo() throws InterruptedException {
+        PrintQueue queue = new PrintQueue(new MultiStoreProperties());
+        queue.put(task(null, "T1"));
+        queue.put(task(null, "T2"));
+        queue.put(task(null, "T3"));
+
+        assertEquals(Arrays.asList("T1", "T2", "T3"), drain(queue));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void storesTakeTurns() throws InterruptedException {
+        PrintQueue queue = new PrintQueue(new MultiStoreProperties());
+        queue.put(task("A", "A1"));
+        queue.put(task("A", "A2"));
+        queue.put(task("A", "A3"));
+        queue.put(task("B", "B1"));
+        queue.put(task("B", "B2"));
+
+        assertEquals(Arrays.asList("A1", "B1", "A2", "B2", "A3"), drain(queue));
+    }
+
+    @Test
+    void weightSetsTasksPerTurn() throws InterruptedException {
+        PrintQueue queue = new PrintQueue(properties(2, 1));
+        for (int i = 1; i <= 4; i++) {
+            queue.put(task("A", "A" + i));
+            queue.put(task("B", "B" + i));
+        }
+
+        assertEquals(Arrays.asList("A1", "A2", "B1", "A3", "A4", "B2", "B3", "B4"), drain(queue));
+    }
+
+    @Test
+    void capacityIsSharedByWeight() {
+        PrintQueue queue = new PrintQueue(properties(3, 1));
+
+        assertEquals(750, queue.shareOf("A"));
+        assertEquals(250, queue.shareOf("B"));
+        // 未配置的门店按权重1加入
+        assertEquals(200, queue.shareOf("C"));
+        assertEquals(1000, new PrintQueue(new MultiStoreProperties()).shareOf(null));
+    }
+
+    @Test
+    void storeOverShareBorrowsOnlyWhileOthersAreIdle() throws InterruptedException {
+        PrintQueue queue = new PrintQueue(properties(1, 1));
+        for (int i = 0; i < 600; i++) {
+            assertTrue(queue.offer(task("A", "A" + i), 0, TimeUnit.SECONDS));
+        }
+        queue.put(task("B", "B0"));
+
+        assertFalse(queue.offer(task("A", "A600"), 0, TimeUnit.SECONDS));
+        assertTrue(queue.offer(task("B", "B1"), 0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullQueueAdmitsStoreUnderShareFirst() throws Exception {
+        PrintQueue queue = new PrintQueue(properties(1, 1));
+        while (queue.offer(task("A", "A"), 0, TimeUnit.SECONDS)) {
+            // A借用全部容量
+        }
+        assertEquals(1000, queue.size());
+
+        // B在份额内，等到A的任务取出一个后入队
+        CompletableFuture<Boolean> storeB = CompletableFuture.supplyAsync(() -> offer(queue, task("B", "B0")));
+        Thread.sleep(100);
+        queue.poll();
+
+        assertTrue(storeB.get(5, TimeUnit.SECONDS));
+        assertFalse(queue.offer(task("A", "A"), 0, TimeUnit.SECONDS));
+    }
+
+    private static boolean offer(PrintQueue queue, PrintTask task) {
+        try {
+            return queue.offer(task, 5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static MultiStoreProperties properties(int weightA, int weightB) {
+        MultiStoreProperties properties = new MultiStoreProperties();
+        properties.getStores().put("A", store(weightA));
+        properties.getStores().put("B", store(weightB));
+        return properties;
+    }
+
+    private static MultiStoreProperties.Store store(int weight) {
+        MultiStoreProperties.Store store = new MultiStoreProperties.Store();
+        store.setWeight(weight);
+        return store;
+    }
+
+    private static PrintTask task(String storeId, String taskId) {
+        return PrintTask.builder().taskId(taskId).storeId(storeId).build();
+    }
+
+    private static List<String> drain(PrintQueue queue) {
+        List<String> taskIds = new ArrayList<>();
+        PrintTask task;
+        while ((task = queue.poll()) != null) {
+            taskIds.add(task.getTaskId());
+        }
+        return taskIds;
+    }
+}
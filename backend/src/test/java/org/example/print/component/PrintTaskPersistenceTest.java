@@ -0,0 +1,77 @@
+package org.example.print.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.print.bean.PrintTask;
+import org.example.print.bean.PrintTaskStatus;
+import org.example.print.config.JacksonConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class PrintTaskPersistenceTest {
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+
+    @TempDir
+    File dataDir;
+
+    @Test
+    void importsLegacyTaskFilesIntoJournal() throws IOException {
+        File legacyDir = new File(dataDir, "print_tasks");
+        legacyDir.mkdirs();
+        File pending = new File(legacyDir, "T1.json");
+        File completed = new File(legacyDir, "T2.json");
+        objectMapper.writeValue(pending, task("T1", PrintTaskStatus.PENDING));
+        objectMapper.writeValue(completed, task("T2", PrintTaskStatus.COMPLETED));
+
+        open().destroy();
+
+        assertFalse(pending.exists());
+        assertFalse(completed.exists());
+        // 旧文件删除后任务仍能从日志恢复
+        PrintTaskPersistence restarted = open();
+        assertEquals(Collections.singletonList("T1"), recover(restarted));
+        restarted.destroy();
+    }
+
+    private PrintTaskPersistence open() {
+        PrintTaskPersistence persistence = new PrintTaskPersistence(objectMapper, new PendingTaskIndex());
+        ReflectionTestUtils.setField(persistence, "baseDir", dataDir.getPath());
+        ReflectionTestUtils.setField(persistence, "segmentSize", 1024 * 1024L);
+        ReflectionTestUtils.setField(persistence, "fsync", true);
+        ReflectionTestUtils.setField(persistence, "stateSlots", 64);
+        ReflectionTestUtils.setField(persistence, "format", "binary");
+        ReflectionTestUtils.setField(persistence, "recoveryBatchSize", 64);
+        ReflectionTestUtils.setField(persistence, "writeBehind", true);
+        ReflectionTestUtils.setField(persistence, "retentionDays", 7);
+        persistence.init();
+        return persistence;
+    }
+
+    private static List<String> recover(PrintTaskPersistence persistence) {
+        List<PrintTask> tasks = new ArrayList<>();
+        persistence.recoverPendingTasks(tasks::add, new RecoveryProgress());
+        return tasks.stream().map(PrintTask::getTaskId).collect(Collectors.toList());
+    }
+
+    private static PrintTask task(String taskId, PrintTaskStatus status) {
+        PrintTask task = PrintTask.builder()
+                .taskId(taskId)
+                .status(status)
+                .createTime(LocalDateTime.now())
+                .build();
+        task.setContent("小票内容");
+        return task;
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.print.persistence;
+
+import org.example.print.bean.PrintContentType;
+import org.example.print.bean.PrintTask;
+import org.example.print.bean.PrintTaskPriority;
+import org.example.print.bean.PrintTaskStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrintTaskCodecTest {
+
+    private static final LocalDateTime CREATE_TIME = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123456789);
+
+    @Test
+    void roundTripCurrentVersion() {
+        PrintTask task = task("小票内容");
+
+        PrintTask decoded = PrintTaskCodec.decode(PrintTaskCodec.encode(task));
+
+        assertTask(task, decoded);
+        assertEquals("1001", decoded.getStoreId());
+    }
+
+    @Test
+    void roundTripKeepsLongContentPacked() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("招牌牛肉面（大份） x1  28.50\n");
+        }
+        PrintTask task = task(content.toString());
+
+        PrintTask decoded = PrintTaskCodec.decode(PrintTaskCodec.encode(task));
+
+        assertNotNull(decoded.packedContent());
+        assertEquals(content.toString(), decoded.getContent());
+    }
+
+    @Test
+    void roundTripNullFields() {
+        PrintTask task = new PrintTask();
+        task.setTaskId("T1");
+
+        PrintTask decoded = PrintTaskCodec.decode(PrintTaskCodec.encode(task));
+
+        assertEquals("T1", decoded.getTaskId());
+        assertNull(decoded.getContent());
+        assertNull(decoded.getStatus());
+        assertNull(decoded.getCreateTime());
+        assertNull(decoded.getStoreId());
+    }
+
+    @Test
+    void decodesVersion1() {
+        // 版本1的内容没有压缩标记，也没有门店
+        Legacy data = new Legacy(1).string("T1").string("小票内容");
+        data.commonFields();
+
+        PrintTask decoded = PrintTaskCodec.decode(data.toByteArray());
+
+        assertTask(task("小票内容"), decoded);
+        assertNull(decoded.getStoreId());
+    }
+
+    @Test
+    void decodesVersion2() {
+        Legacy data = new Legacy(2).string("T1").writeByte(1).string("小票内容");
+        data.commonFields();
+
+        PrintTask decoded = PrintTaskCodec.decode(data.toByteArray());
+
+        assertTask(task("小票内容"), decoded);
+        assertNull(decoded.getStoreId());
+    }
+
+    @Test
+    void decodesNewerVersionIgnoringAppendedFields() {
+        byte[] current = PrintTaskCodec.encode(task("小票内容"));
+        byte[] newer = Arrays.copyOf(current, current.length + 3);
+        newer[1] = 4;
+        newer[current.length] = 2;
+        newer[current.length + 1] = 'x';
+
+        PrintTask decoded = PrintTaskCodec.decode(newer);
+
+        assertTask(task("小票内容"), decoded);
+        assertEquals("1001", decoded.getStoreId());
+    }
+
+    @Test
+    void rejectsUnknownVersionAndNonBinaryData() {
+        byte[] data = PrintTaskCodec.encode(task("小票内容"));
+        data[1] = 0;
+
+        assertThrows(IllegalArgumentException.class, () -> PrintTaskCodec.decode(data));
+        byte[] json = "{\"taskId\":\"T1\"}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> PrintTaskCodec.decode(json));
+    }
+
+    @Test
+    void readsTaskIdWithoutDecoding() {
+        byte[] data = PrintTaskCodec.encode(task("小票内容"));
+
+        assertTrue(PrintTaskCodec.isBinary(data));
+        assertEquals("T1", PrintTaskCodec.readTaskId(data));
+    }
+
+    private static PrintTask task(String content) {
+        PrintTask task = PrintTask.builder()
+                .taskId("T1")
+                .status(PrintTaskStatus.PENDING)
+                .retryCount(2)
+                .createTime(CREATE_TIME)
+                .printerName("XP-58")
+                .priority(PrintTaskPriority.HIGH)
+                .contentType(PrintContentType.RECEIPT)
+                .storeId("1001")
+                .build();
+        task.setContent(content);
+        return task;
+    }
+
+    private static void assertTask(PrintTask expected, PrintTask actual) {
+        assertEquals(expected.getTaskId(), actual.getTaskId());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getRetryCount(), actual.getRetryCount());
+        assertEquals(expected.getCreateTime(), actual.getCreateTime());
+        assertEquals(expected.getPrinterName(), actual.getPrinterName());
+        assertEquals(expected.getPriority(), actual.getPriority());
+        assertEquals(expected.getContentType(), actual.getContentType());
+    }
+
+    /**
+     * 按旧版本格式手工写入的任务数据
+     */
+    private static final class Legacy {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Legacy(int version) {
+            out.write(0xB1);
+            out.write(version);
+        }
+
+        Legacy writeByte(int value) {
+            out.write(value);
+            return this;
+        }
+
+        Legacy varLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        Legacy string(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varLong(bytes.length + 1L);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        // 内容之后各版本相同的字段
+        void commonFields() {
+            varLong(PrintTaskStatus.PENDING.ordinal() + 1);
+            varLong(2);
+            writeByte(1);
+            varLong(CREATE_TIME.toEpochSecond(ZoneOffset.UTC));
+            varLong(CREATE_TIME.getNano());
+            string("XP-58");
+            varLong(PrintTaskPriority.HIGH.ordinal() + 1);
+            varLong(PrintContentType.RECEIPT.ordinal() + 1);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.print.persistence;
+
+import org.example.print.bean.PrintTask;
+import org.example.print.bean.PrintTaskStatus;
+import org.example.print.bean.TaskPage;
+import org.example.print.config.JacksonConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TaskArchiveTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    File dir;
+
+    @Test
+    void readsMembersBeforeTornTail() throws IOException {
+        TaskArchive archive = newArchive();
+        archive.append(tasks("T1", "T2"));
+        File file = new File(dir, DAY + ".jsonl.gz");
+        long firstMember = file.length();
+        archive.append(tasks("T3"));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // 第二个成员只写入了头部
+            raf.setLength(firstMember + 10);
+        }
+
+        assertEquals(Arrays.asList("T1", "T2"), taskIds(newArchive().query(DAY, 0, 0)));
+    }
+
+    @Test
+    void appendAfterTornTailIsReadable() throws IOException {
+        TaskArchive archive = newArchive();
+        archive.append(tasks("T1"));
+        archive.append(tasks("T2"));
+        File file = new File(dir, DAY + ".jsonl.gz");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // 第二个成员缺少末尾的长度字段
+            raf.setLength(raf.length() - 4);
+        }
+
+        // 重启后追加，先截断不完整的成员
+        TaskArchive restarted = newArchive();
+        restarted.append(tasks("T3"));
+
+        assertEquals(Arrays.asList("T1", "T3"), taskIds(restarted.query(DAY, 0, 0)));
+    }
+
+    @Test
+    void queriesPageAcrossMembers() throws IOException {
+        TaskArchive archive = newArchive();
+        archive.append(tasks("T1", "T2"));
+        archive.append(tasks("T3", "T4"));
+
+        TaskPage page = archive.query(DAY, 1, 3);
+
+        assertEquals(Collections.singletonList("T4"), taskIds(page));
+        assertEquals(4, page.getTotal());
+    }
+
+    @Test
+    void dropsDaysBeforeCutoff() throws IOException {
+        TaskArchive archive = newArchive();
+        archive.append(tasks("T1"));
+
+        assertEquals(1, archive.dropBefore(DAY.plusDays(1)));
+        assertEquals(Collections.emptyList(), archive.listDays());
+    }
+
+    private TaskArchive newArchive() {
+        return new TaskArchive(dir, new JacksonConfig().objectMapper());
+    }
+
+    private static List<PrintTask> tasks(String... taskIds) {
+        return Arrays.stream(taskIds)
+                .map(taskId -> PrintTask.builder()
+                        .taskId(taskId)
+                        .status(PrintTaskStatus.COMPLETED)
+                        .createTime(LocalDateTime.of(DAY, LocalTime.NOON))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> taskIds(TaskPage page) {
+        return page.getTasks().stream().map(PrintTask::getTaskId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,270 @@
+package org.example.print.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaskJournalTest {
+
+    private static final byte TYPE = 1;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void replayStopsAtTornTail() throws IOException {
+        writeRecords("a", "b", "c");
+        File segment = onlySegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // 最后一条记录只写了一半
+            file.setLength(file.length() - 1);
+        }
+
+        assertEquals(Arrays.asList("a", "b"), replay());
+    }
+
+    @Test
+    void replayStopsAtCorruptRecord() throws IOException {
+        writeRecords("a", "b", "c");
+        File segment = onlySegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // 改动第二条记录的内容，校验失败后不再读取后面的记录
+            long secondPayload = 9 + 1 + 9;
+            file.seek(secondPayload);
+            file.write('x');
+        }
+
+        assertEquals(Collections.singletonList("a"), replay());
+    }
+
+    @Test
+    void appendsAfterTornTailGoToNewSegment() throws IOException {
+        writeRecords("a", "b");
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        TaskJournal journal = new TaskJournal(dir, 1024 * 1024, false);
+        journal.open((type, payload) -> {
+        });
+        journal.append(TYPE, bytes("c"));
+        journal.close();
+
+        assertEquals(Arrays.asList("a", "c"), replay());
+    }
+
+    @Test
+    void failedAppendDoesNotHideLaterRecords() throws IOException {
+        FailingJournal journal = new FailingJournal(dir, false);
+        journal.open((type, payload) -> {
+        });
+        journal.append(TYPE, bytes("a"));
+        journal.failNextWrite = true;
+        assertThrows(IOException.class, () -> journal.append(TYPE, bytes("torn")));
+        journal.append(TYPE, bytes("c"));
+        journal.close();
+
+        // 失败的记录已从段中截掉，后面的记录仍在同一段中
+        onlySegment();
+        assertEquals(Arrays.asList("a", "c"), replay());
+    }
+
+    @Test
+    void failedAppendRollsWhenTruncateFails() throws IOException {
+        FailingJournal journal = new FailingJournal(dir, true);
+        journal.open((type, payload) -> {
+        });
+        journal.append(TYPE, bytes("a"));
+        journal.failNextWrite = true;
+        assertThrows(IOException.class, () -> journal.append(TYPE, bytes("torn")));
+        journal.append(TYPE, bytes("c"));
+        journal.close();
+
+        // 不完整的记录留在旧段末尾，之后的记录写入新段
+        assertEquals(Arrays.asList("a", "c"), replay());
+    }
+
+    @Test
+    void snapshotReplacesCoveredSegments() throws IOException {
+        TaskJournal journal = new TaskJournal(dir, 1024 * 1024, false);
+        journal.open((type, payload) -> {
+        });
+        journal.append(TYPE, bytes("a"));
+        long sealed = journal.roll();
+        journal.append(TYPE, bytes("b"));
+        journal.writeSnapshot(sealed, Collections.singletonList(new TaskJournal.Record(TYPE, bytes("s"))));
+        journal.close();
+
+        assertEquals(Arrays.asList("s", "b"), replay());
+    }
+
+    private void writeRecords(String... payloads) throws IOException {
+        TaskJournal journal = new TaskJournal(dir, 1024 * 1024, true);
+        journal.open((type, payload) -> {
+        });
+        long position = 0;
+        for (String payload : payloads) {
+            position = journal.append(TYPE, bytes(payload));
+        }
+        journal.sync(position);
+        journal.close();
+    }
+
+    private List<String> replay() throws IOException {
+        List<String> records = new ArrayList<>();
+        TaskJournal journal = new TaskJournal(dir, 1024 * 1024, false);
+        journal.open((type, payload) -> records.add(new String(payload, StandardCharsets.UTF_8)));
+        journal.close();
+        return records;
+    }
+
+    private File onlySegment() {
+        File[] segments = dir.listFiles((d, name) -> name.startsWith("segment_") && new File(d, name).length() > 0);
+        assertEquals(1, segments.length);
+        return segments[0];
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 可以让下一次写入只写一半后失败的日志，模拟磁盘写满等错误
+     */
+    private static class FailingJournal extends TaskJournal {
+        private final boolean failTruncate;
+        boolean failNextWrite;
+
+        FailingJournal(File dir, boolean failTruncate) {
+            super(dir, 1024 * 1024, false);
+            this.failTruncate = failTruncate;
+        }
+
+        @Override
+        FileChannel openChannel(File file) throws IOException {
+            return new FailingChannel(super.openChannel(file));
+        }
+
+        private class FailingChannel extends FileChannel {
+            private final FileChannel delegate;
+
+            FailingChannel(FileChannel delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (!failNextWrite) {
+                    return delegate.write(src);
+                }
+                failNextWrite = false;
+                ByteBuffer half = src.duplicate();
+                half.limit(src.position() + src.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("磁盘已满");
+            }
+
+            @Override
+            public FileChannel truncate(long size) throws IOException {
+                if (failTruncate) {
+                    throw new IOException("截断失败");
+                }
+                delegate.truncate(size);
+                return this;
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                return delegate.read(dst);
+            }
+
+            @Override
+            public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+                return delegate.read(dsts, offset, length);
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+                return delegate.write(srcs, offset, length);
+            }
+
+            @Override
+            public long position() throws IOException {
+                return delegate.position();
+            }
+
+            @Override
+            public FileChannel position(long newPosition) throws IOException {
+                delegate.position(newPosition);
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return delegate.size();
+            }
+
+            @Override
+            public void force(boolean metaData) throws IOException {
+                delegate.force(metaData);
+            }
+
+            @Override
+            public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+                return delegate.transferTo(position, count, target);
+            }
+
+            @Override
+            public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+                return delegate.transferFrom(src, position, count);
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                return delegate.read(dst, position);
+            }
+
+            @Override
+            public int write(ByteBuffer src, long position) throws IOException {
+                return delegate.write(src, position);
+            }
+
+            @Override
+            public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+                return delegate.map(mode, position, size);
+            }
+
+            @Override
+            public FileLock lock(long position, long size, boolean shared) throws IOException {
+                return delegate.lock(position, size, shared);
+            }
+
+            @Override
+            public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+                return delegate.tryLock(position, size, shared);
+            }
+
+            @Override
+            protected void implCloseChannel() throws IOException {
+                delegate.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.print.render;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.Code128Reader;
+import com.google.zxing.oned.Code128Writer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Code128Test {
+
+    private static final String[] SAMPLES = {
+            "A", "12345678", "Order-20240101#007", "!\"~{|}`", "https://example.com/o/123?x=1&y=2"
+    };
+
+    @Test
+    void matchesReferenceEncoderInCodeSetB() throws Exception {
+        for (String data : SAMPLES) {
+            boolean[] modules = Code128.encode(data);
+            assertEquals(Code128.moduleCount(data), modules.length, data);
+            boolean[] expected = referenceCodeSetB(data);
+            boolean[] symbol = Arrays.copyOfRange(modules, 10, modules.length - 10);
+            assertArrayEquals(expected, symbol, data);
+            // 静区为白
+            for (int i = 0; i < 10; i++) {
+                assertFalse(modules[i], data);
+                assertFalse(modules[modules.length - 1 - i], data);
+            }
+        }
+    }
+
+    @Test
+    void decodesBackToOriginalText() throws Exception {
+        for (String data : SAMPLES) {
+            assertEquals(data, decode(Code128.encode(data), 2), data);
+        }
+        // 参考实现强制B字符集时不接受空格，空格只做解码校验
+        assertEquals("No. 7 A", decode(Code128.encode("No. 7 A"), 1));
+    }
+
+    @Test
+    void fitsModuleWidthToPaper() {
+        // (8 + 2) * 11 + 13 + 20 = 143个模块
+        assertEquals(143, Code128.moduleCount("12345678"));
+        assertEquals(2, Code128.fitModuleWidth("12345678", 384));
+        assertEquals(3, Code128.fitModuleWidth("12345678", 576));
+        assertEquals(3, Code128.fitModuleWidth("12345678", 429));
+        assertEquals(2, Code128.fitModuleWidth("12345678", 428));
+        assertEquals(1, Code128.fitModuleWidth("12345678", 143));
+        assertEquals(0, Code128.fitModuleWidth("12345678", 142));
+
+        char[] tooLong = new char[40];
+        Arrays.fill(tooLong, 'X');
+        assertEquals(0, Code128.fitModuleWidth(new String(tooLong), 384));
+    }
+
+    @Test
+    void rejectsTextOutsideCodeSetB() {
+        assertTrue(Code128.isEncodable(" ~"));
+        assertFalse(Code128.isEncodable(""));
+        assertFalse(Code128.isEncodable(null));
+        assertFalse(Code128.isEncodable("订单"));
+        assertFalse(Code128.isEncodable("a\tb"));
+        assertEquals(0, Code128.fitModuleWidth("订单", 576));
+        assertEquals(0, Code128.fitModuleWidth("", 576));
+    }
+
+    private static String decode(boolean[] modules, int scale) throws Exception {
+        int width = modules.length * scale;
+        int height = 20;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = modules[x / scale] ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+        return new Code128Reader().decode(bitmap).getText();
+    }
+
+    /**
+     * 参考实现默认会为数字切换到C字符集，这里固定为B字符集并去掉静区以便逐模块比较
+     */
+    private static boolean[] referenceCodeSetB(String data) throws Exception {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.FORCE_CODE_SET, "B");
+        hints.put(EncodeHintType.MARGIN, 0);
+        BitMatrix matrix = new Code128Writer().encode(data, BarcodeFormat.CODE_128, 0, 1, hints);
+        boolean[] modules = new boolean[matrix.getWidth()];
+        for (int x = 0; x < modules.length; x++) {
+            modules[x] = matrix.get(x, 0);
+        }
+        return modules;
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.print.render;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class QrCodeTest {
+
+    // 版本1到10在纠错等级M、字节模式下的最大字节数
+    private static final int[] CAPACITY_M = {0, 14, 26, 42, 62, 84, 106, 122, 152, 180, 213};
+
+    @Test
+    void matchesReferenceEncoderForEveryVersion() throws Exception {
+        for (int version = 1; version <= 10; version++) {
+            // 小写字母使参考实现也选择字节模式
+            String data = text(CAPACITY_M[version]);
+            boolean[][] modules = QrCode.encode(data);
+            assertNotNull(modules, "版本" + version);
+            assertEquals(version * 4 + 17, modules.length, "版本" + version);
+
+            QRCode reference = reference(data, readMask(modules));
+            assertEquals(version, reference.getVersion().getVersionNumber());
+            assertMatrixEquals(reference.getMatrix(), modules, "版本" + version);
+        }
+    }
+
+    @Test
+    void matchesReferenceEncoderForTypicalContent() throws Exception {
+        String[] contents = {
+                "https://example.com/o/20240101120000123456",
+                "ORDER:1024;TABLE:A12;TOTAL:88.50",
+                "Pickup code a0387",
+                "{\"orderId\":\"20240101120000123456\",\"shop\":\"S-01\"}"
+        };
+        for (String data : contents) {
+            boolean[][] modules = QrCode.encode(data);
+            assertMatrixEquals(reference(data, readMask(modules)).getMatrix(), modules, data);
+        }
+    }
+
+    @Test
+    void decodesUtf8ContentAcrossVersions() throws Exception {
+        String unit = "订单号20240101-测试门店/";
+        StringBuilder data = new StringBuilder();
+        while (data.toString().getBytes(StandardCharsets.UTF_8).length <= CAPACITY_M[10] - unit.length() * 3) {
+            data.append(unit);
+            assertEquals(data.toString(), decode(QrCode.encode(data.toString())));
+        }
+    }
+
+    @Test
+    void rejectsContentBeyondVersion10() {
+        assertNotNull(QrCode.encode(text(213)));
+        assertNull(QrCode.encode(text(214)));
+        assertNull(QrCode.encode(""));
+        assertNull(QrCode.encode(null));
+    }
+
+    private static String text(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i * 7 % 26));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 规范允许任一掩码，两边罚分计算的细节不同，选出的掩码可能不一样，故按本实现选出的掩码生成参考矩阵。
+     * 本实现不写ECI，参考实现遇到非Latin-1字符会写ECI，所以只比较ASCII内容，中文由解码测试覆盖
+     */
+    private static QRCode reference(String data, int mask) throws Exception {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.QR_MASK_PATTERN, mask);
+        return Encoder.encode(data, ErrorCorrectionLevel.M, hints);
+    }
+
+    private static void assertMatrixEquals(ByteMatrix expected, boolean[][] actual, String message) {
+        assertEquals(expected.getHeight(), actual.length, message);
+        for (int y = 0; y < actual.length; y++) {
+            for (int x = 0; x < actual.length; x++) {
+                assertEquals(expected.get(x, y) == 1, actual[y][x], message + " 模块(" + x + "," + y + ")");
+            }
+        }
+    }
+
+    // 左上角格式信息第8行第0-5列为高6位，与0x5412异或后纠错等级之后的3位为掩码编号
+    private static int readMask(boolean[][] modules) {
+        int bits = 0;
+        for (int x = 0; x <= 5; x++) {
+            bits = bits << 1 | (modules[8][x] ? 1 : 0);
+        }
+        return ((bits >> 1 ^ 0x5412 >> 10) & 0x7);
+    }
+
+    private static String decode(boolean[][] modules) throws Exception {
+        int scale = 4;
+        int quietZone = 4;
+        int size = (modules.length + quietZone * 2) * scale;
+        int[] pixels = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int my = y / scale - quietZone;
+                int mx = x / scale - quietZone;
+                boolean dark = my >= 0 && mx >= 0 && my < modules.length && mx < modules.length && modules[my][mx];
+                pixels[y * size + x] = dark ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(size, size, pixels)));
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
+        Result result = new QRCodeReader().decode(bitmap, hints);
+        return result.getText();
+    }
+}
@@ -0,0 +1,137 @@
+package org.example.print.service;
+
+import org.example.print.bean.PrintTaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class TaskStatusOutboxTest {
+
+    private static final String SERVER_URL = "http://print-server";
+    private static final String BATCH_URL = SERVER_URL + "/api/print-tasks/status/batch";
+
+    @TempDir
+    File dataDir;
+
+    private final List<TaskStatusOutbox> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(TaskStatusOutbox::destroy);
+    }
+
+    @Test
+    void replaysUnsentStatusesAfterRestart() {
+        TaskStatusOutbox outbox = open(new RestTemplate());
+        outbox.enqueue("T1", PrintTaskStatus.PRINTING);
+        outbox.enqueue("T2", PrintTaskStatus.COMPLETED);
+        outbox.destroy();
+
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo(BATCH_URL))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().json("[{\"taskId\":\"T1\",\"status\":\"PRINTING\"},"
+                        + "{\"taskId\":\"T2\",\"status\":\"COMPLETED\"}]"))
+                .andRespond(withSuccess());
+        TaskStatusOutbox restarted = open(restTemplate);
+        assertEquals(2, pending(restarted));
+
+        flush(restarted);
+
+        server.verify();
+        assertEquals(0, pending(restarted));
+    }
+
+    @Test
+    void sentStatusesAreNotReplayed() {
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo(SERVER_URL + "/api/print-tasks/T1/status"))
+                .andExpect(method(HttpMethod.PUT))
+                .andRespond(withSuccess());
+        TaskStatusOutbox outbox = open(restTemplate);
+        outbox.enqueue("T1", PrintTaskStatus.COMPLETED);
+        flush(outbox);
+        server.verify();
+        outbox.destroy();
+
+        assertEquals(0, pending(open(new RestTemplate())));
+    }
+
+    @Test
+    void failedStatusesSurviveRestart() {
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo(BATCH_URL)).andRespond(withServerError());
+        TaskStatusOutbox outbox = open(restTemplate);
+        outbox.enqueue("T1", PrintTaskStatus.PRINTING);
+        outbox.enqueue("T2", PrintTaskStatus.FAILED);
+        flush(outbox);
+        server.verify();
+        assertEquals(2, pending(outbox));
+        outbox.destroy();
+
+        assertEquals(2, pending(open(new RestTemplate())));
+    }
+
+    @Test
+    void keepsOnlyLatestStatusOfTask() {
+        TaskStatusOutbox outbox = open(new RestTemplate());
+        outbox.enqueue("T1", PrintTaskStatus.PENDING);
+        outbox.enqueue("T1", PrintTaskStatus.PRINTING);
+        outbox.enqueue("T1", PrintTaskStatus.COMPLETED);
+        outbox.destroy();
+
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo(SERVER_URL + "/api/print-tasks/T1/status"))
+                .andExpect(content().string("COMPLETED"))
+                .andRespond(withSuccess());
+        TaskStatusOutbox restarted = open(restTemplate);
+        flush(restarted);
+
+        server.verify();
+        assertEquals(0, pending(restarted));
+    }
+
+    private TaskStatusOutbox open(RestTemplate restTemplate) {
+        TaskStatusOutbox outbox = new TaskStatusOutbox(restTemplate);
+        ReflectionTestUtils.setField(outbox, "baseDir", dataDir.getPath());
+        ReflectionTestUtils.setField(outbox, "serverUrl", SERVER_URL);
+        ReflectionTestUtils.setField(outbox, "batchSize", 50);
+        ReflectionTestUtils.setField(outbox, "batchPath", "/api/print-tasks/status/batch");
+        ReflectionTestUtils.setField(outbox, "batchRetryInterval", 600000L);
+        // 测试中手动发送
+        ReflectionTestUtils.setField(outbox, "flushInterval", 3600000L);
+        ReflectionTestUtils.setField(outbox, "retryInitial", 1000L);
+        ReflectionTestUtils.setField(outbox, "retryMax", 60000L);
+        ReflectionTestUtils.setField(outbox, "compactThreshold", 1048576L);
+        outbox.init();
+        opened.add(outbox);
+        return outbox;
+    }
+
+    private static void flush(TaskStatusOutbox outbox) {
+        ReflectionTestUtils.invokeMethod(outbox, "flush");
+    }
+
+    private static int pending(TaskStatusOutbox outbox) {
+        return (Integer) outbox.getStatistics().get("pending");
+    }
+}